@@ -0,0 +1,115 @@
+package neuralnet2;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// the generation boundary: a whole epoch, and the selection/crossover/mutation pieces it's made of; each benchmark
+// takes a state with only the params it depends on, so JMH doesn't run the same code once per combination of the others
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneticAlgBench {
+
+    @State(Scope.Benchmark)
+    public static class Population {         // a scored population that's been through one epoch, so the selection is set up
+        @Param({"45", "1000", "10000"})
+        public int popSize;
+
+        @Param({"ROULETTE", "SUS", "TOURNAMENT", "RANK"})
+        public String selection;             // a Selection.Type (which JMH's generated code can't see)
+
+        GeneticAlg GA;
+        GenomeArena pop;
+        double[] fitness;                    // what every genome scored, put back after each epoch
+
+        @Setup
+        public void setup() {
+            SplittableRandom rnd = new SplittableRandom(42);
+            Config config = new Config();
+            config.sweepers = popSize;
+            config.selection = Selection.Type.valueOf(selection);
+            config.parallelEpoch = parallel();
+            GA = new GeneticAlg(config, numWeights(), rnd.split());
+            pop = GA.getArena();
+            fitness = new double[popSize];
+            for (int i = 0; i < popSize; i++) {
+                fitness[i] = rnd.nextInt(30);  // something like what a generation ends with
+            }
+            score();
+            GA.epoch();                      // sets up the selection
+            score();
+        }
+
+        boolean parallel() {
+            return false;
+        }
+
+        void score() {
+            for (int i = 0; i < popSize; i++) {
+                pop.setFitness(i, fitness[i]);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Epoch extends Population {
+        @Param({"false", "true"})
+        public boolean parallel;             // Config.parallelEpoch
+
+        @Override
+        boolean parallel() {
+            return parallel;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Genomes {            // crossover and mutation only see two genomes, however big the population is
+        GeneticAlg GA;
+        int numWeights;
+        double[] parents, children;          // two genomes' worth of weights each
+
+        @Setup
+        public void setup() {
+            numWeights = numWeights();
+            Config config = new Config();
+            config.sweepers = 2;
+            GA = new GeneticAlg(config, numWeights, new SplittableRandom(42));
+            parents = Arrays.copyOf(GA.getArena().weights(), 2 * numWeights);
+            children = new double[2 * numWeights];
+        }
+    }
+
+    static int numWeights() {
+        return new NeuralNetwork(Params.INPUTS, Params.OUTPUTS, Params.HIDDEN, Params.NEURONS_PER_HIDDEN).getNumberOfWeights();
+    }
+
+    @Benchmark
+    public GenomeArena epoch(Epoch s) {
+        s.GA.epoch();
+        s.score();
+        return s.pop;
+    }
+
+    @Benchmark
+    public int selectParent(Population s) {
+        return s.GA.selectParent();
+    }
+
+    @Benchmark
+    public double[] crossover(Genomes s) {
+        s.GA.crossover(s.parents, 0, s.numWeights, s.children, 0, s.numWeights);
+        return s.children;
+    }
+
+    @Benchmark
+    public double[] mutate(Genomes s) {
+        s.GA.mutate(s.children, 0);
+        return s.children;
+    }
+
+}
@@ -0,0 +1,67 @@
+package neuralnet2;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// finding the closest mine and checking if it's been reached, by linear scan and by grid
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MineBench {
+
+    @Param({"100", "1000", "10000"})
+    public int mines;
+
+    private ArrayList<Point2D> mineList;
+    private MineGrid grid;
+    private AgentMS[] sweepers;              // spread out so the queries don't all hit the same cells
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        mineList = new ArrayList<>(mines);
+        for (int i = 0; i < mines; i++) {
+            mineList.add(new Point2D.Double(rnd.nextDouble() * Params.WIN_WIDTH, rnd.nextDouble() * Params.WIN_HEIGHT));
+        }
+        grid = new MineGrid(mineList, Params.WIN_WIDTH, Params.WIN_HEIGHT);
+        sweepers = new AgentMS[1024];
+        for (int i = 0; i < sweepers.length; i++) {
+            sweepers[i] = new AgentMS(new Config(), rnd.split());
+        }
+    }
+
+    private AgentMS nextSweeper() {
+        next = (next + 1) & (sweepers.length - 1);
+        return sweepers[next];
+    }
+
+    @Benchmark
+    public int closestLinear() {
+        return nextSweeper().getClosestMine(mineList);
+    }
+
+    @Benchmark
+    public int closestGrid() {
+        return nextSweeper().getClosestMine(grid);
+    }
+
+    @Benchmark
+    public int closestAndCheckLinear() { // what a tick does per agent per mine type
+        AgentMS a = nextSweeper();
+        return a.checkForMine(mineList, a.getClosestMine(mineList));
+    }
+
+    @Benchmark
+    public int closestAndCheckGrid() {
+        AgentMS a = nextSweeper();
+        return a.checkForMine(grid, a.getClosestMine(grid));
+    }
+}
@@ -0,0 +1,120 @@
+package neuralnet2;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// one forward pass through the sweeper brain, the old boxed way, the flat way, and the whole population at once (scalar, SIMD or generated);
+// the single network benchmarks take a state without the population's params, so they aren't rerun for every agents x backend
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class NetworkBench {
+
+    @State(Scope.Benchmark)
+    public static class Shape {              // what every benchmark here depends on
+        @Param({"5", "100"})
+        public int neurons;                  // per hidden layer, the vector backend is meant for wide networks
+
+        @Param({"sigmoid", "sigmoid_lut", "relu"})
+        public String activation;            // every layer's (see Activation for the rest)
+
+        NeuralNetwork brain;
+        double[] inputs;
+
+        void setup(SplittableRandom rnd) {
+            brain = new NeuralNetwork(Params.INPUTS, Params.OUTPUTS, Params.HIDDEN, neurons, rnd);
+            brain.setActivations(Activation.parse(activation, Params.HIDDEN), Params.ACT_RESPONSE);
+            inputs = new double[Params.INPUTS];
+            for (int i = 0; i < Params.INPUTS; i++) {
+                inputs[i] = rnd.nextDouble() * 2 - 1;
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Single extends Shape { // one network, run by the interpreter and by NetworkCompiler's generated code
+        NeuralNetwork compiled;              // brain again, with the same weights
+        ArrayList<Double> boxedInputs;
+        double[] outputs, scratch;
+
+        @Setup
+        public void setup() {
+            SplittableRandom rnd = new SplittableRandom(42);
+            setup(rnd);
+            compiled = brain.sameShape();
+            double[] brainWeights = new double[brain.getNumberOfWeights()];
+            for (int i = 0; i < brainWeights.length; i++) {
+                brainWeights[i] = rnd.nextDouble() * 2 - 1;
+            }
+            brain.useWeights(brainWeights, 0);
+            compiled.useWeights(brainWeights, 0);
+            compiled.compile();              // stays interpreted past NetworkCompiler.MAX_WEIGHTS
+            boxedInputs = new ArrayList<>();
+            for (double in : inputs) {
+                boxedInputs.add(in);
+            }
+            outputs = new double[brain.getMaxLayerSize()];
+            scratch = new double[brain.getMaxLayerSize()];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Population extends Shape {
+        @Param({"45", "1000"})
+        public int agents;
+
+        @Param({"scalar", "vector", "compiled"})
+        public String backend;               // compiled is NetworkCompiler's batched kernel
+
+        PopulationNet batch;
+
+        @Setup
+        public void setup() {
+            SplittableRandom rnd = new SplittableRandom(42);
+            setup(rnd);
+            if (backend.equals("compiled")) {
+                NeuralNetwork shape = brain.sameShape();
+                shape.compile();             // PopulationNet picks the kernel up from a compiled shape
+                batch = PopulationNet.create(agents, shape, false);
+            } else {
+                batch = PopulationNet.create(agents, brain, backend.equals("vector"));
+            }
+            for (int a = 0; a < agents; a++) {
+                double[] w = new double[brain.getNumberOfWeights()];
+                for (int i = 0; i < w.length; i++) {
+                    w[i] = rnd.nextDouble() * 2 - 1;
+                }
+                batch.setWeights(a, w);
+                batch.setInputs(a, inputs);
+            }
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Double> updateBoxed(Single s) {
+        return s.brain.Update(s.boxedInputs);
+    }
+
+    @Benchmark
+    public double updateFlat(Single s) {
+        s.brain.Update(s.inputs, s.outputs, s.scratch);
+        return s.outputs[0];
+    }
+
+    @Benchmark
+    public double updateCompiled(Single s) {
+        s.compiled.Update(s.inputs, s.outputs, s.scratch);
+        return s.outputs[0];
+    }
+
+    @Benchmark
+    public double updatePopulation(Population s) { // all the agents' networks, divide by agents to compare with updateFlat
+        s.batch.update();
+        return s.batch.getOutput(0, 0);
+    }
+}
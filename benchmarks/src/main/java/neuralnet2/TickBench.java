@@ -0,0 +1,43 @@
+package neuralnet2;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// one full headless tick of a world: sensing, thinking, moving and sweeping for every agent
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBench {
+
+    @Param({"45", "1000"})
+    public int agents;
+
+    @Param({"100", "10000"})
+    public int mines;
+
+    private WorldMS world;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        int badMines = Math.max(1, mines * Params.BADMINES / Params.MINES);
+        Config config = new Config();
+        config.sweepers = agents;
+        config.goodMines = mines - badMines;
+        config.badMines = badMines;
+        world = new WorldMS(config, rnd.split());
+        int numWeights = world.getAgents().get(0).getNumberOfWeights();
+        GeneticAlg GA = new GeneticAlg(config, numWeights, rnd.split());
+        world.setWeights(GA.getArena());
+    }
+
+    @Benchmark
+    public void tick() {
+        world.tick();
+    }
+}
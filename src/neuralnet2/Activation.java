@@ -0,0 +1,76 @@
+package neuralnet2;
+
+import java.util.Arrays;
+
+enum Activation {                            // what a neuron does with its summed input, picked per layer (checkpoints store the ordinal, so only ever add to the end)
+
+    SIGMOID {                                // the original: 0 to 1, <0.5 for negative inputs, >0.5 for positive inputs
+        @Override
+        double apply(double activation, double response) {
+            return 1.0 / (1.0 + Math.exp(-activation / response));
+        }
+    },
+    SIGMOID_LUT {                            // the same curve read off a table and interpolated, no exp, within LUT_ERROR of SIGMOID
+        @Override
+        double apply(double activation, double response) {
+            double t = (activation / response + LUT_RANGE) * LUT_STEPS;
+            if (!(t > 0)) {                  // NaN lands here too
+                return LUT[0];
+            }
+            if (t >= LUT.length - 1) {
+                return LUT[LUT.length - 1];
+            }
+            int i = (int) t;
+            return LUT[i] + (LUT[i + 1] - LUT[i]) * (t - i);
+        }
+    },
+    TANH {                                   // -1 to 1, centred on zero
+        @Override
+        double apply(double activation, double response) {
+            return Math.tanh(activation / response);
+        }
+    },
+    RELU {                                   // 0 for negative inputs, the input itself otherwise, the response doesn't come into it
+        @Override
+        double apply(double activation, double response) {
+            return Math.max(0, activation);
+        }
+    },
+    LEAKY_RELU {                             // like RELU but negative inputs still get through a little, so neurons can't die
+        @Override
+        double apply(double activation, double response) {
+            return activation > 0 ? activation : LEAKY_SLOPE * activation;
+        }
+    };
+
+    abstract double apply(double activation, double response);
+
+    static final double LEAKY_SLOPE = 0.01;
+
+    // the table covers activation / response from -LUT_RANGE to LUT_RANGE, LUT_STEPS entries per unit; past the ends the
+    // sigmoid is flat to within 1.2e-7, and linear interpolation between entries is off by at most f''/8 * step^2, about 3e-6
+    private static final int LUT_RANGE = 16;
+    private static final int LUT_STEPS = 64;
+    private static final double[] LUT = new double[2 * LUT_RANGE * LUT_STEPS + 1];
+    static final double LUT_ERROR = 5e-6;    // the most SIGMOID_LUT is ever off by
+
+    static {
+        for (int i = 0; i < LUT.length; i++) {
+            LUT[i] = SIGMOID.apply((double) i / LUT_STEPS - LUT_RANGE, 1);
+        }
+    }
+
+    // one per layer from a comma separated list like "relu,sigmoid", the last one repeating for any layers the list doesn't reach
+    static Activation[] parse(String list, int layers) {
+        String[] names = list.split(",");
+        Activation[] perLayer = new Activation[layers];
+        for (int i = 0; i < layers; i++) {
+            perLayer[i] = valueOf(names[Math.min(i, names.length - 1)].trim().toUpperCase());
+        }
+        return perLayer;
+    }
+
+    static String toString(Activation[] perLayer) { // the other way round, for messages and settings
+        return String.join(",", Arrays.stream(perLayer).map(a -> a.name().toLowerCase()).toArray(String[]::new));
+    }
+}
@@ -1,163 +1,230 @@
 package neuralnet2;
 
-import java.awt.*;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-class AgentMS implements Serializable {
+class AgentMS {                        // one sweeper's brain, and a view of its slot in the world's SweepersMS arrays
     private NeuralNetwork brain;       // each agent has a brain (neural net)
-    private Point2D position;          // where the agent is on the map
-    private Point2D facing;            // which way they're facing (used as inputs) as an (x, y) pair
-    private Point2D cGoodMine;
-    private Point2D cBadMine;
-    private double rotation;           // the angle from which facing is calculated
-    private double speed;              // the speed of the agent
-    private double lTrack, rTrack;     // the influence rating toward turning left and turning right, used as outputs
-    private double fitness;            // how well the agent is doing, quantified (for the genetic algorithm)
+    private SweepersMS s;              // where its position, heading, speed, fitness and what it sensed live
+    private int i;                     // and which slot is its
     private double scale;              // the size of the agent
+    private int width, height;         // the size of the world it lives in
     private boolean isInputVisualized; // determines whether or not the neural network's inputs are visualized
+    private double[] inputs;           // reused every tick so that thinking doesn't allocate
+    private double[] outputs;
+    private double[] scratch;
+    private SplittableRandom rnd;      // this sweeper's own random numbers, for where it starts out
 
-    AgentMS() { // initialization
-        Random rnd = new Random();
-        brain = new NeuralNetwork(Params.INPUTS, Params.OUTPUTS, Params.HIDDEN, Params.NEURONS_PER_HIDDEN);
-        rotation = rnd.nextDouble() * Math.PI * 2;
-        lTrack = 0.16;
-        rTrack = 0.16;
-        fitness = 0;
+    AgentMS(Config config, SplittableRandom rnd) { // a sweeper on its own, with a slot all to itself
+        this(config, rnd, new SweepersMS(1), 0);
+    }
+
+    AgentMS(Config config, SplittableRandom rnd, SweepersMS sweepers, int slot) { // initialization
+        this.rnd = rnd;
+        s = sweepers;
+        i = slot;
+        width = config.worldWidth;
+        height = config.worldHeight;
+        brain = config.newNetwork(rnd);
+        s.rotation[i] = rnd.nextDouble() * Math.PI * 2;
+        s.lTrack[i] = 0.16;
+        s.rTrack[i] = 0.16;
+        s.fitness[i] = 0;
         scale = Params.SCALE;
         isInputVisualized = false;
-        position = new Point2D.Double(rnd.nextDouble() * Params.WIN_WIDTH, rnd.nextDouble() * Params.WIN_HEIGHT);
-        facing = new Point2D.Double(-Math.sin(rotation), Math.cos(rotation)); // java starts measuring angles at the 90 degree mark.
+        s.x[i] = rnd.nextDouble() * width;
+        s.y[i] = rnd.nextDouble() * height;
+        s.facingX[i] = -Math.sin(s.rotation[i]); // java starts measuring angles at the 90 degree mark.
+        s.facingY[i] = Math.cos(s.rotation[i]);
+        inputs = new double[Params.INPUTS];
+        outputs = new double[brain.getMaxLayerSize()];
+        scratch = new double[brain.getMaxLayerSize()];
     }
 
     boolean update(ArrayList<Point2D> goodMines, ArrayList<Point2D> badMines) {        // updates all the parameters of the sweeper, sounds fairly important
-        ArrayList<Double> inputs = new ArrayList<>();
-        // find the closest mine, figure out the direction the mine is from the sweeper's perspective by creating a unit vector
-        // your code goes here
-        cGoodMine = goodMines.get(getClosestMine(goodMines));
-        double xComponent = position.getX() - cGoodMine.getX();
-        double yComponent = position.getY() - cGoodMine.getY();
-        double divisor = Math.sqrt(Math.pow(xComponent, 2) + Math.pow(yComponent, 2));
-        Point2D directionToGoodMine = new Point2D.Double(xComponent / divisor, yComponent / divisor);
+        sense(goodMines, badMines);
+        return think();
+    }
 
-        cBadMine = badMines.get(getClosestMine(badMines));
-        xComponent = position.getX() - cBadMine.getX();
-        yComponent = position.getY() - cBadMine.getY();
-        divisor = Math.sqrt(Math.pow(xComponent, 2) + Math.pow(yComponent, 2));
-        Point2D directionToBadMine = new Point2D.Double(xComponent / divisor, yComponent / divisor);
+    boolean update(MineGrid goodMines, MineGrid badMines) {
+        sense(goodMines, badMines);
+        return think();
+    }
 
-        // create the inputs for the neural net
-        // your code goes here
-        inputs.add(facing.getX());
-        inputs.add(facing.getY());
-        inputs.add(directionToGoodMine.getX());
-        inputs.add(directionToGoodMine.getY());
-        inputs.add(directionToBadMine.getX());
-        inputs.add(directionToBadMine.getY());
+    boolean think() { // runs the sensed inputs through this sweeper's own brain and steers by the result
+        if (!decide()) {
+            return false;
+        }
+        act();
+        return true;
+    }
 
+    boolean decide() { // just the brain part of think, so the two can be timed apart
         // get outputs from the sweeper's brain
-        ArrayList<Double> output = brain.Update(inputs);
-        if (output.size() < Params.OUTPUTS) {
+        if (brain.Update(inputs, outputs, scratch) < Params.OUTPUTS) {
             System.err.println("!! incorrect number of outputs !!");
             return false; // something went really wrong if this happens
         }
+        return true;
+    }
+
+    void act() { // steers by what decide came up with
+        steer(outputs[0], outputs[1]);
+    }
+
+    double[] sense(ArrayList<Point2D> goodMines, ArrayList<Point2D> badMines) { // fills in (and returns) the inputs for the neural net
+        int good = getClosestMine(goodMines), bad = getClosestMine(badMines);
+        return sense(good, goodMines.get(good).getX(), goodMines.get(good).getY(), bad, badMines.get(bad).getX(), badMines.get(bad).getY());
+    }
+
+    double[] sense(MineGrid goodMines, MineGrid badMines) { // same as above, using the grids to find the closest mines
+        int good = getClosestMine(goodMines), bad = getClosestMine(badMines);
+        return sense(good, goodMines.getX(good), goodMines.getY(good), bad, badMines.getX(bad), badMines.getY(bad));
+    }
+
+    private double[] sense(int good, double goodX, double goodY, int bad, double badX, double badY) {
+        // find the closest mine, figure out the direction the mine is from the sweeper's perspective by creating a unit vector
+        // your code goes here
+        s.goodMine[i] = good;
+        s.goodX[i] = goodX;
+        s.goodY[i] = goodY;
+        double xComponent = -MineGrid.delta(goodX - s.x[i], width);
+        double yComponent = -MineGrid.delta(goodY - s.y[i], height);
+        double divisor = Math.sqrt(Math.pow(xComponent, 2) + Math.pow(yComponent, 2));
+        inputs[2] = xComponent / divisor;
+        inputs[3] = yComponent / divisor;
+
+        s.badMine[i] = bad;
+        s.badX[i] = badX;
+        s.badY[i] = badY;
+        xComponent = -MineGrid.delta(badX - s.x[i], width);
+        yComponent = -MineGrid.delta(badY - s.y[i], height);
+        divisor = Math.sqrt(Math.pow(xComponent, 2) + Math.pow(yComponent, 2));
+        inputs[4] = xComponent / divisor;
+        inputs[5] = yComponent / divisor;
+
+        // the rest of the inputs for the neural net
+        inputs[0] = s.facingX[i];
+        inputs[1] = s.facingY[i];
+        return inputs;
+    }
 
+    void steer(double left, double right) { // acts on the brain's outputs, whichever way they were computed
         // turn left or turn right?
-        lTrack = output.get(0);
-        rTrack = output.get(1);
-        double rotationForce = lTrack - rTrack;
+        s.lTrack[i] = left;
+        s.rTrack[i] = right;
+        double rotationForce = left - right;
         rotationForce = Math.min(Params.MAX_TURN_RATE, Math.max(rotationForce, -Params.MAX_TURN_RATE)); // clamp between lower and upper bounds
-        rotation += rotationForce;
+        double rotation = s.rotation[i] += rotationForce;
 
         // update the speed and direction of the sweeper
 //        speed = Params.MAX_SPEED;
-        speed = Math.min(Params.MAX_SPEED, lTrack + rTrack);
-        facing.setLocation(-Math.sin(rotation), Math.cos(rotation));
+        double speed = s.speed[i] = Math.min(Params.MAX_SPEED, left + right);
+        double facingX = s.facingX[i] = -Math.sin(rotation);
+        double facingY = s.facingY[i] = Math.cos(rotation);
 
         // then update the position, torus style
-        double xPos = (Params.WIN_WIDTH + position.getX() + facing.getX() * speed) % Params.WIN_WIDTH;
-        double yPos = (Params.WIN_HEIGHT + position.getY() + facing.getY() * speed) % Params.WIN_HEIGHT;
-        position.setLocation(xPos, yPos);
-        return true;
+        s.x[i] = (width + s.x[i] + facingX * speed) % width;
+        s.y[i] = (height + s.y[i] + facingY * speed) % height;
     }
 
     int getClosestMine(ArrayList<Point2D> mines) { // finds the mine closest to the sweeper
-        double closestSoFar = Point2D.distanceSq(mines.get(0).getX(), mines.get(0).getY(), position.getX(), position.getY());
+        double closestSoFar = MineGrid.distanceSq(s.x[i], s.y[i], mines.get(0).getX(), mines.get(0).getY(), width, height);
         int closestMine = 0;
         double lengthOne;
-        for (int i = 1; i < mines.size(); i++) {
-            lengthOne = Point2D.distanceSq(mines.get(i).getX(), mines.get(i).getY(), position.getX(), position.getY());
+        for (int m = 1; m < mines.size(); m++) {
+            lengthOne = MineGrid.distanceSq(s.x[i], s.y[i], mines.get(m).getX(), mines.get(m).getY(), width, height);
             if (lengthOne < closestSoFar) {
                 closestSoFar = lengthOne;
-                closestMine = i;
+                closestMine = m;
             }
         }
         return closestMine;
     }
 
+    int getClosestMine(MineGrid mines) { // same as above, but only looks in the grid cells near the sweeper
+        return mines.nearest(s.x[i], s.y[i]);
+    }
+
     int checkForMine(ArrayList<Point2D> mines, int closestMine) { // has the sweeper actually swept up the closest mine to it this tick?
-        if (Point2D.distance(position.getX(), position.getY(), mines.get(closestMine).getX(), mines.get(closestMine).getY()) < (Params.MINE_SIZE + scale / 2)) {
-            return closestMine;
-        }
-        return -1;
+        return isTouching(mines.get(closestMine).getX(), mines.get(closestMine).getY()) ? closestMine : -1;
+    }
+
+    int checkForMine(MineGrid mines, int closestMine) {
+        return isTouching(mines.getX(closestMine), mines.getY(closestMine)) ? closestMine : -1;
+    }
+
+    boolean isAffectedBy(int mine, double toX, double toY, boolean good) { // would the mine moving to (toX, toY) change what this sweeper last sensed?
+        int closest = good ? s.goodMine[i] : s.badMine[i];
+        return closest < 0 || closest == mine
+                || MineGrid.distanceSq(s.x[i], s.y[i], toX, toY, width, height)
+                <= MineGrid.distanceSq(s.x[i], s.y[i], good ? s.goodX[i] : s.badX[i], good ? s.goodY[i] : s.badY[i], width, height);
+    }
+
+    private boolean isTouching(double mineX, double mineY) {
+        return Math.sqrt(MineGrid.distanceSq(s.x[i], s.y[i], mineX, mineY, width, height)) < (Params.MINE_SIZE + scale / 2);
     }
 
     void reset() {    // reinitialize this sweeper's position/direction values
-        Random rnd = new Random();
-        rotation = rnd.nextDouble() * Math.PI * 2;
-        position = new Point2D.Double(rnd.nextDouble() * Params.WIN_WIDTH, rnd.nextDouble() * Params.WIN_HEIGHT);
-        facing = new Point2D.Double(-Math.sin(rotation), Math.cos(rotation));
-        fitness = 0;
-    }
-
-    void draw(Graphics2D g) {    // draw the sweeper in its correct place
-        AffineTransform at = g.getTransform(); // affine transforms are a neat application of matrix algebra
-        // draw the sweeper using a fancy color scheme
-        g.rotate(rotation, position.getX(), position.getY()); // they allow you to rotate a g.draw kind of function's output
-        g.setColor(new Color(255, 200, 0));
-
-        g.drawOval((int) (position.getX() - scale / 2), (int) (position.getY() - scale / 2), (int) scale, (int) scale);
-        if (fitness > 0) {
-            g.setColor(new Color(0, Math.min(255, 15 + (int) fitness * 12), Math.min(255, 15 + (int) fitness * 12)));
-        } else {
-            g.setColor(new Color(Math.min(255, 15 + (int) -fitness * 12), 0, 0));
-        }
-        g.fillOval((int) (position.getX() - scale / 2) + 1, (int) (position.getY() - scale / 2) + 1, (int) scale - 2, (int) scale - 2);
-
-        g.rotate(0);
-        // draw the direction the agent is facing
-        g.setTransform(at); // set the transform back to the normal transform
-        g.setColor(new Color(255, 200, 0));
-        g.drawLine((int) (position.getX()), (int) (position.getY()), (int) (position.getX() - scale / 2 + facing.getX() * scale), (int) (position.getY() - scale / 2 + facing.getY() * scale));
-
-        // NEURAL NETWORK VISUALIZATION
-        if(isInputVisualized){
-            g.setColor(new Color(0, 123, 167));
-            g.drawLine((int) (position.getX()), (int) (position.getY()), (int) (cGoodMine.getX()), (int) (cGoodMine.getY()));
-            g.setColor(Color.RED);
-            g.drawLine((int) (position.getX()), (int) (position.getY()), (int) (cBadMine.getX()), (int) (cBadMine.getY()));
-        }
+        s.rotation[i] = rnd.nextDouble() * Math.PI * 2;
+        s.x[i] = rnd.nextDouble() * width;
+        s.y[i] = rnd.nextDouble() * height;
+        s.facingX[i] = -Math.sin(s.rotation[i]);
+        s.facingY[i] = Math.cos(s.rotation[i]);
+        s.fitness[i] = 0;
+    }
 
-        // draw the agent's fitness
-        g.setColor(new Color(0, 123, 167));
-        g.drawString("" + (int) fitness, (int) position.getX() - (int) (scale / 2), (int) position.getY() + 2 * (int) scale);
+    // where the sweeper is and how it's moving, for saving and restoring it
+    static final int STATE_SIZE = 7;
+
+    void getState(double[] state, int at) {
+        state[at] = s.x[i];
+        state[at + 1] = s.y[i];
+        state[at + 2] = s.rotation[i];
+        state[at + 3] = s.speed[i];
+        state[at + 4] = s.lTrack[i];
+        state[at + 5] = s.rTrack[i];
+        state[at + 6] = s.fitness[i];
+    }
 
+    // what a picture of the sweeper needs: where it is, which way it's pointing, its fitness and the closest mines it sensed
+    static final int DRAW_SIZE = 8;
+
+    void getDrawState(double[] state, int at) {
+        boolean sensed = s.goodMine[i] >= 0;
+        state[at] = s.x[i];
+        state[at + 1] = s.y[i];
+        state[at + 2] = s.rotation[i];
+        state[at + 3] = s.fitness[i];
+        state[at + 4] = sensed ? s.goodX[i] : s.x[i];
+        state[at + 5] = sensed ? s.goodY[i] : s.y[i];
+        state[at + 6] = sensed ? s.badX[i] : s.x[i];
+        state[at + 7] = sensed ? s.badY[i] : s.y[i];
     }
 
+    void setState(double[] state, int at) {
+        s.x[i] = state[at];
+        s.y[i] = state[at + 1];
+        s.rotation[i] = state[at + 2];
+        s.speed[i] = state[at + 3];
+        s.lTrack[i] = state[at + 4];
+        s.rTrack[i] = state[at + 5];
+        s.fitness[i] = state[at + 6];
+        s.facingX[i] = -Math.sin(s.rotation[i]);
+        s.facingY[i] = Math.cos(s.rotation[i]);
+    }
 
     void incrementFitness() {
-        fitness++;
+        s.fitness[i]++;
     }
 
     void deIncrimentFitness() {
-        fitness -= 2;
+        s.fitness[i] -= 2;
     }
 
     double getFitness() {
-        return fitness;
+        return s.fitness[i];
     }
 
     int getNumberOfWeights() {
@@ -168,8 +235,8 @@ class AgentMS implements Serializable {
         return isInputVisualized;
     }
 
-    void setWeights(ArrayList<Double> w) {
-        brain.replaceWeights(w);
+    void setWeights(double[] block, int offset) { // the brain reads its genome straight out of the block
+        brain.useWeights(block, offset);
     }
 
     void flipInputVisualization() {
@@ -0,0 +1,113 @@
+package neuralnet2;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+class AutosaveMS {                           // writes checkpoints and screenshots on a background thread so saving never holds up the simulation
+
+    private Path dir;                        // where the rotating autosaves go
+    private int keep;                        // how many autosaves of each run to keep on disk
+    private ExecutorService writer;          // one thread, so files are written in the order they were asked for
+    private ConcurrentHashMap<String, Runnable> pendingAutosaves; // per run, only the newest autosave is worth writing if the disk falls behind
+
+    AutosaveMS(Path dir, int keep) {
+        this.dir = dir;
+        this.keep = Math.max(1, keep);
+        pendingAutosaves = new ConcurrentHashMap<>();
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "autosave");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    static boolean isDue(int generation) { // whether this generation boundary should be autosaved
+        return Params.AUTOSAVE_EVERY > 0 && generation % Params.AUTOSAVE_EVERY == 0;
+    }
+
+    // checkpoint was captured at a generation boundary, the compressing and writing happens later on the writer thread
+    void autosave(String run, CheckpointMS checkpoint, int generation) {
+        Path file = dir.resolve(String.format("%s-gen%08d.msck.gz", run, generation));
+        if (pendingAutosaves.put(run, () -> writeAndRotate(run, checkpoint, file)) == null) {
+            writer.execute(() -> {
+                Runnable job = pendingAutosaves.remove(run);
+                if (job != null) {
+                    job.run();
+                }
+            });
+        }
+    }
+
+    void saveOnExit(String run, CheckpointMS checkpoint) { // kept apart from the rotating autosaves, it may be part way through a generation
+        save(checkpoint, dir.resolve(run + "-exit.msck.gz"));
+    }
+
+    void save(CheckpointMS checkpoint, Path file) { // a one-off save (e.g. the Save button), never dropped
+        writer.execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                checkpoint.write(file);
+                System.out.println("Checkpoint saved to " + file + ".");
+            } catch (IOException e) {
+                System.err.println("Couldn't save " + file + ": " + e.getMessage());
+            }
+        });
+    }
+
+    void save(BufferedImage img, Path file) { // the image must not be drawn on again, it's encoded later
+        writer.execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                ImageIO.write(img, "png", file.toFile());
+            } catch (IOException e) {
+                System.err.println("Couldn't save " + file + ": " + e.getMessage());
+            }
+        });
+    }
+
+    void flush(long timeoutMillis) { // waits for everything asked for so far to reach the disk, then stops the writer
+        writer.shutdown(); // anything still pending already has a job queued that will write it
+        try {
+            if (!writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("Gave up waiting for saves to finish.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeAndRotate(String run, CheckpointMS checkpoint, Path file) {
+        try {
+            Files.createDirectories(dir);
+            checkpoint.write(file);
+            rotate(run);
+        } catch (IOException e) {
+            System.err.println("Autosave to " + file + " failed: " + e.getMessage());
+        }
+    }
+
+    private void rotate(String run) throws IOException { // the generation is zero padded, so the oldest sort first
+        ArrayList<Path> saves = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, run + "-gen*.msck.gz")) {
+            for (Path f : files) {
+                saves.add(f);
+            }
+        }
+        Collections.sort(saves);
+        for (int i = 0; i < saves.size() - keep; i++) {
+            Files.deleteIfExists(saves.get(i));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package neuralnet2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+class CheckpointMS {                         // everything needed to pick a simulation back up, packed into one small binary file
+
+    // the file starts with a fixed header of ints:
+    //   magic, version, inputs, outputs, hidden layers, neurons per hidden layer, weights per genome,
+    //   population size, good mines, bad mines, generation, ticks, flags, generations of history (the newest Params.FITNESS_HISTORY at most),
+    //   world width, world height, worlds
+    // then an int for each evaluated layer, its Activation's ordinal,
+    // followed by little endian doubles:
+    //   the activation response, best then average fitness for each generation of history,
+    //   each genome's fitness, each genome's weights (one genome after the other),
+    //   then for each world: each agent's state (AgentMS.STATE_SIZE values), good mine x/y pairs, bad mine x/y pairs
+    // the whole thing is gzipped when the file name ends in .gz
+    static final int MAGIC = 0x4B43534D;     // "MSCK" when read as little endian bytes
+    static final int VERSION = 4;            // 2 added the world size, 3 the activation functions, 4 every world rather than just the first
+    private static final int HEADER_INTS = 17;
+    private static final int FLAG_INPUTS_VISUALIZED = 1;
+
+    private int inputs, outputs, hidden, neuronsPerHidden, numWeights;
+    private int worldWidth, worldHeight, worlds;
+    private Activation[] activations;        // one per evaluated layer
+    private double response;
+    private int generation, ticks;
+    private boolean inputsVisualized;
+    private double[] bestHistory, avgHistory;
+    private double[] fitness;                // one per genome
+    private double[] weights;                // numWeights per genome
+    private double[] agentStates;            // AgentMS.STATE_SIZE per agent, world after world
+    private double[] goodMines, badMines;    // x/y pairs, world after world
+
+    private CheckpointMS() {
+    }
+
+    static CheckpointMS capture(SimulationMS sim) { // copies the state out, so the copy can be written while the simulation carries on
+        CheckpointMS c = new CheckpointMS();
+        c.inputs = Params.INPUTS;
+        c.outputs = Params.OUTPUTS;
+        c.hidden = sim.getConfig().hidden;
+        c.neuronsPerHidden = sim.getConfig().neuronsPerHidden;
+        c.worldWidth = sim.getConfig().worldWidth;
+        c.worldHeight = sim.getConfig().worldHeight;
+        c.activations = sim.getConfig().layerActivations();
+        c.response = sim.getConfig().activationResponse;
+        c.numWeights = sim.getGA().getChromosomeLength();
+        c.generation = sim.getGenerations();
+        c.ticks = sim.getTicks();
+
+        FitnessLogMS log = sim.getFitnessLog();
+        c.bestHistory = new double[log.getCapacity()];
+        c.avgHistory = new double[log.getCapacity()];
+        int history = log.copy(c.bestHistory, c.avgHistory);
+        c.bestHistory = Arrays.copyOf(c.bestHistory, history);
+        c.avgHistory = Arrays.copyOf(c.avgHistory, history);
+
+        GenomeArena pop = sim.getPop();
+        c.fitness = new double[pop.size()];
+        c.weights = new double[pop.size() * c.numWeights];
+        pop.get(c.weights, c.fitness);
+
+        c.worlds = sim.getNumWorlds();
+        c.inputsVisualized = sim.getWorld().getAgents().get(0).isInputVisualized();
+        int numAgents = sim.getWorld().getAgents().size();
+        int numGood = sim.getWorld().getGoodMines().size(), numBad = sim.getWorld().getBadMines().size();
+        c.agentStates = new double[c.worlds * numAgents * AgentMS.STATE_SIZE];
+        c.goodMines = new double[c.worlds * numGood * 2];
+        c.badMines = new double[c.worlds * numBad * 2];
+        for (int w = 0; w < c.worlds; w++) { // every world, or a load would leave the others where the old run had them
+            ArrayList<AgentMS> agents = sim.getWorld(w).getAgents();
+            for (int i = 0; i < numAgents; i++) {
+                agents.get(i).getState(c.agentStates, (w * numAgents + i) * AgentMS.STATE_SIZE);
+            }
+            System.arraycopy(sim.getWorld(w).getGoodMines().copy(new double[0]), 0, c.goodMines, w * numGood * 2, numGood * 2);
+            System.arraycopy(sim.getWorld(w).getBadMines().copy(new double[0]), 0, c.badMines, w * numBad * 2, numBad * 2);
+        }
+        return c;
+    }
+
+    void restore(SimulationMS sim) throws IOException { // puts the saved state back into a simulation of the same shape
+        Config config = sim.getConfig();
+        if (inputs != Params.INPUTS || outputs != Params.OUTPUTS || hidden != config.hidden || neuronsPerHidden != config.neuronsPerHidden
+                || numWeights != sim.getGA().getChromosomeLength()) {
+            throw new IOException("checkpoint is for a different network topology");
+        }
+        int numAgents = sim.getWorld().getAgents().size();
+        if (worlds != sim.getNumWorlds()) {
+            throw new IOException("checkpoint is for " + worlds + " worlds");
+        }
+        if (fitness.length != sim.getPop().size() || agentStates.length != worlds * numAgents * AgentMS.STATE_SIZE) {
+            throw new IOException("checkpoint is for a different population size");
+        }
+        if (worldWidth != config.worldWidth || worldHeight != config.worldHeight) {
+            throw new IOException("checkpoint is for a " + worldWidth + "x" + worldHeight + " world");
+        }
+        if (!Arrays.equals(activations, config.layerActivations()) || response != config.activationResponse) {
+            throw new IOException("checkpoint was trained with activations=" + Activation.toString(activations) + " activationResponse=" + response);
+        }
+        sim.getPop().set(weights, fitness);
+        sim.shareWeights();
+        int goodPerWorld = goodMines.length / worlds, badPerWorld = badMines.length / worlds;
+        for (int w = 0; w < worlds; w++) {
+            WorldMS world = sim.getWorld(w);
+            for (int i = 0; i < numAgents; i++) {
+                world.getAgents().get(i).setState(agentStates, (w * numAgents + i) * AgentMS.STATE_SIZE);
+            }
+            world.setGoodMines(Arrays.copyOfRange(goodMines, w * goodPerWorld, (w + 1) * goodPerWorld));
+            world.setBadMines(Arrays.copyOfRange(badMines, w * badPerWorld, (w + 1) * badPerWorld));
+        }
+        sim.setTicks(ticks);
+        sim.setGenerations(generation);
+        sim.getFitnessLog().restore(bestHistory, avgHistory, generation);
+    }
+
+    boolean isInputsVisualized() {
+        return inputsVisualized;
+    }
+
+    void write(Path file) throws IOException { // written to a temporary file first so a crash can't leave a half written checkpoint behind
+        long start = StatsMS.start();
+        ByteBuffer buf = ByteBuffer.allocate(numBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putInt(inputs).putInt(outputs).putInt(hidden).putInt(neuronsPerHidden).putInt(numWeights)
+                .putInt(fitness.length).putInt(goodMines.length / 2 / worlds).putInt(badMines.length / 2 / worlds)
+                .putInt(generation).putInt(ticks).putInt(inputsVisualized ? FLAG_INPUTS_VISUALIZED : 0).putInt(bestHistory.length)
+                .putInt(worldWidth).putInt(worldHeight).putInt(worlds);
+        for (Activation a : activations) {
+            buf.putInt(a.ordinal());
+        }
+        buf.asDoubleBuffer().put(response).put(bestHistory).put(avgHistory).put(fitness).put(weights).put(agentStates).put(goodMines).put(badMines);
+        buf.rewind();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (isCompressed(file)) { // autosaves pile up, so they're squeezed (quickly) on the way out
+            try (OutputStream out = new FastGZIPOutputStream(Files.newOutputStream(tmp))) {
+                out.write(buf.array());
+            }
+        } else {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        StatsMS.end(StatsMS.Phase.SAVE, start);
+    }
+
+    static CheckpointMS read(Path file) throws IOException { // maps the file straight into memory and bulk copies the doubles out
+        long start = StatsMS.start();
+        CheckpointMS c;
+        if (isCompressed(file)) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file), 1 << 16)) {
+                c = read(ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN), file.toString());
+            }
+        } else {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (ch.size() < HEADER_INTS * 4L) {
+                    throw new IOException(file + " is too short to be a checkpoint");
+                }
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                c = read(map.order(ByteOrder.LITTLE_ENDIAN), file.toString());
+            }
+        }
+        StatsMS.end(StatsMS.Phase.LOAD, start);
+        return c;
+    }
+
+    private static class FastGZIPOutputStream extends GZIPOutputStream { // gzip at the fastest level, which GZIPOutputStream has no constructor for
+        FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, 1 << 16);
+            def.setLevel(Deflater.BEST_SPEED); // its own Deflater, which close() ends
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    static CheckpointMS read(ByteBuffer buf, String name) throws IOException {
+        if (buf.remaining() < HEADER_INTS * 4 || buf.getInt() != MAGIC) {
+            throw new IOException(name + " is not a checkpoint");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException(name + " is checkpoint version " + version + ", this build reads version " + VERSION);
+        }
+        CheckpointMS c = new CheckpointMS();
+        c.inputs = buf.getInt();
+        c.outputs = buf.getInt();
+        c.hidden = buf.getInt();
+        c.neuronsPerHidden = buf.getInt();
+        c.numWeights = buf.getInt();
+        int popSize = buf.getInt();
+        int numGood = buf.getInt();
+        int numBad = buf.getInt();
+        c.generation = buf.getInt();
+        c.ticks = buf.getInt();
+        c.inputsVisualized = (buf.getInt() & FLAG_INPUTS_VISUALIZED) != 0;
+        int history = buf.getInt();
+        c.worldWidth = buf.getInt();
+        c.worldHeight = buf.getInt();
+        c.worlds = buf.getInt();
+        if (c.worlds < 1 || c.hidden < 0 || buf.remaining() < 4L * c.hidden) {
+            throw new IOException(name + " is truncated or corrupt");
+        }
+        c.activations = new Activation[c.hidden];
+        for (int i = 0; i < c.hidden; i++) {
+            int a = buf.getInt();
+            if (a < 0 || a >= Activation.values().length) {
+                throw new IOException(name + " uses an activation function this build doesn't have");
+            }
+            c.activations[i] = Activation.values()[a];
+        }
+
+        c.bestHistory = new double[history];
+        c.avgHistory = new double[history];
+        c.fitness = new double[popSize];
+        c.weights = new double[popSize * c.numWeights];
+        c.agentStates = new double[c.worlds * popSize * AgentMS.STATE_SIZE];
+        c.goodMines = new double[c.worlds * numGood * 2];
+        c.badMines = new double[c.worlds * numBad * 2];
+        if (buf.remaining() != 8L * c.numDoubles()) {
+            throw new IOException(name + " is truncated or corrupt");
+        }
+        DoubleBuffer doubles = buf.asDoubleBuffer();
+        c.response = doubles.get();
+        doubles.get(c.bestHistory).get(c.avgHistory).get(c.fitness).get(c.weights).get(c.agentStates).get(c.goodMines).get(c.badMines);
+        return c;
+    }
+
+    private int numBytes() {
+        return (HEADER_INTS + activations.length) * 4 + 8 * numDoubles();
+    }
+
+    private int numDoubles() { // how many doubles follow the header and the activations
+        return 1 + bestHistory.length + avgHistory.length + fitness.length + weights.length + agentStates.length + goodMines.length + badMines.length;
+    }
+}
@@ -0,0 +1,273 @@
+package neuralnet2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+class Config {                               // the settings that can change from run to run without recompiling: Params' defaults, then a properties file, then the command line
+
+    // the world, which is as big as it likes, the window just scales it to fit
+    int worldWidth = Params.WIN_WIDTH;
+    int worldHeight = Params.WIN_HEIGHT;
+    int sweepers = Params.SWEEPERS;
+    int goodMines = Params.GOODMINES;
+    int badMines = Params.BADMINES;
+    int ticks = Params.TICKS;
+    int worlds = Params.WORLDS;
+    SimulationMS.FitnessStat fitnessStat = Params.FITNESS_STAT;
+    String raceAt = Params.RACE_AT;
+    double raceKeep = Params.RACE_KEEP;
+    boolean parallelTick = Params.PARALLEL_TICK;
+    boolean batchedInference = Params.BATCHED_INFERENCE;
+    boolean vectorInference = Params.VECTOR_INFERENCE;
+    boolean compiledInference = Params.COMPILED_INFERENCE;
+
+    // the neural network (the inputs and outputs are fixed by what the sweepers sense and do)
+    int hidden = Params.HIDDEN;
+    int neuronsPerHidden = Params.NEURONS_PER_HIDDEN;
+    String activations = Params.ACTIVATIONS;
+    double activationResponse = Params.ACT_RESPONSE;
+
+    // the genetic algorithm
+    double crossoverRate = Params.CROSSOVER_RATE;
+    double mutationRate = Params.MUTATION_RATE;
+    double maxPerturbation = Params.MAX_PERTURBATION;
+    int numElite = Params.NUM_ELITE;
+    int numCopiesElite = Params.NUM_COPIES_ELITE;
+    Selection.Type selection = Params.SELECTION;
+    int tournamentSize = Params.TOURNAMENT_SIZE;
+    boolean parallelEpoch = Params.PARALLEL_EPOCH;
+
+    // when to call it a day (see Convergence), HeadlessMS only
+    int plateauWindow = Params.PLATEAU_WINDOW;
+    double plateauMinGain = Params.PLATEAU_MIN_GAIN;
+    double plateauMaxSpread = Params.PLATEAU_MAX_SPREAD;
+    Convergence.Action onPlateau = Params.ON_PLATEAU;
+    int minTicks = Params.MIN_TICKS;
+    int maxTicks = Params.MAX_TICKS;
+
+    long seed = Params.SEED;
+
+    static final String USAGE = "[--config FILE] [--set key=value ...]";
+
+    // --config FILE reads a properties file, --set key=value changes one setting, later ones win; anything else is an error
+    static Config fromArgs(String[] args) {
+        Config config = new Config();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!config.parse(args, i)) {
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        return config.validate();
+    }
+
+    boolean parse(String[] args, int i) { // handles args[i] (and its value, args[i + 1]) if it's one of ours
+        if (i + 1 >= args.length) {
+            return false;
+        }
+        switch (args[i]) {
+            case "--config":
+                try {
+                    load(Paths.get(args[i + 1]));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("couldn't read " + args[i + 1] + ": " + e.getMessage());
+                }
+                return true;
+            case "--set":
+                int eq = args[i + 1].indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("--set needs key=value, not " + args[i + 1]);
+                }
+                set(args[i + 1].substring(0, eq).trim(), args[i + 1].substring(eq + 1).trim());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    void load(Path file) throws IOException { // key=value lines, with the same keys as --set
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            props.load(in);
+        }
+        for (String key : props.stringPropertyNames()) {
+            set(key, props.getProperty(key).trim());
+        }
+    }
+
+    void set(String key, String value) {
+        boolean known = true;
+        try {
+            switch (key) {
+                case "worldWidth":
+                    worldWidth = Integer.parseInt(value);
+                    break;
+                case "worldHeight":
+                    worldHeight = Integer.parseInt(value);
+                    break;
+                case "sweepers":
+                    sweepers = Integer.parseInt(value);
+                    break;
+                case "goodMines":
+                    goodMines = Integer.parseInt(value);
+                    break;
+                case "badMines":
+                    badMines = Integer.parseInt(value);
+                    break;
+                case "ticks":
+                    ticks = Integer.parseInt(value);
+                    break;
+                case "worlds":
+                    worlds = Integer.parseInt(value);
+                    break;
+                case "fitnessStat":
+                    fitnessStat = SimulationMS.FitnessStat.valueOf(value.toUpperCase());
+                    break;
+                case "raceAt":
+                    raceAt = value;
+                    raceFractions(); // just to check the numbers
+                    break;
+                case "raceKeep":
+                    raceKeep = Double.parseDouble(value);
+                    break;
+                case "parallelTick":
+                    parallelTick = Boolean.parseBoolean(value);
+                    break;
+                case "batchedInference":
+                    batchedInference = Boolean.parseBoolean(value);
+                    break;
+                case "vectorInference":
+                    vectorInference = Boolean.parseBoolean(value);
+                    break;
+                case "compiledInference":
+                    compiledInference = Boolean.parseBoolean(value);
+                    break;
+                case "hidden":
+                    hidden = Integer.parseInt(value);
+                    break;
+                case "neuronsPerHidden":
+                    neuronsPerHidden = Integer.parseInt(value);
+                    break;
+                case "activations":
+                    Activation.parse(value, value.split(",").length); // just to check the names
+                    activations = value;
+                    break;
+                case "activationResponse":
+                    activationResponse = Double.parseDouble(value);
+                    break;
+                case "crossoverRate":
+                    crossoverRate = Double.parseDouble(value);
+                    break;
+                case "mutationRate":
+                    mutationRate = Double.parseDouble(value);
+                    break;
+                case "maxPerturbation":
+                    maxPerturbation = Double.parseDouble(value);
+                    break;
+                case "numElite":
+                    numElite = Integer.parseInt(value);
+                    break;
+                case "numCopiesElite":
+                    numCopiesElite = Integer.parseInt(value);
+                    break;
+                case "selection":
+                    selection = Selection.Type.valueOf(value.toUpperCase());
+                    break;
+                case "tournamentSize":
+                    tournamentSize = Integer.parseInt(value);
+                    break;
+                case "parallelEpoch":
+                    parallelEpoch = Boolean.parseBoolean(value);
+                    break;
+                case "plateauWindow":
+                    plateauWindow = Integer.parseInt(value);
+                    break;
+                case "plateauMinGain":
+                    plateauMinGain = Double.parseDouble(value);
+                    break;
+                case "plateauMaxSpread":
+                    plateauMaxSpread = Double.parseDouble(value);
+                    break;
+                case "onPlateau":
+                    onPlateau = Convergence.Action.valueOf(value.toUpperCase());
+                    break;
+                case "minTicks":
+                    minTicks = Integer.parseInt(value);
+                    break;
+                case "maxTicks":
+                    maxTicks = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    known = false;
+            }
+        } catch (IllegalArgumentException e) { // NumberFormatException and bad enum names included
+            throw new IllegalArgumentException("bad value for " + key + ": " + value);
+        }
+        if (!known) {
+            throw new IllegalArgumentException("unknown setting " + key);
+        }
+    }
+
+    Config validate() { // catches the settings the simulation can't run with before it's half built
+        check(worldWidth > 0 && worldHeight > 0, "the world needs a positive width and height");
+        check(sweepers > 0, "there has to be at least one sweeper");
+        check(goodMines > 0 && badMines > 0, "there has to be at least one good and one bad mine");
+        check(ticks > 1, "a generation has to be at least two ticks long");
+        check(worlds > 0, "there has to be at least one world");
+        check(Arrays.stream(raceFractions()).allMatch(f -> f > 0 && f < 1), "races happen between 0 and 1 of the way through a generation");
+        check(raceKeep > 0 && raceKeep <= 1, "a race has to keep some of the field, and can't keep more than all of it");
+        check(hidden > 0 && neuronsPerHidden >= Params.OUTPUTS, "the network needs a hidden layer with at least " + Params.OUTPUTS + " neurons, the last one is the output");
+        check(activations.split(",").length <= hidden, "there are more activations than layers");
+        check(activationResponse > 0, "the activation response has to be positive");
+        check(crossoverRate >= 0 && crossoverRate <= 1 && mutationRate >= 0 && mutationRate <= 1, "rates go from 0 to 1");
+        check(numElite >= 0 && numCopiesElite >= 0, "elites can't be negative");
+        check(tournamentSize > 0, "a tournament needs someone in it");
+        check(plateauWindow >= 0 && plateauMaxSpread >= 0, "the plateau window and spread can't be negative");
+        check(minTicks == 0 || minTicks > 1, "a generation has to be at least two ticks long");
+        check(minTicks <= ticks && (maxTicks == 0 || ticks <= maxTicks), "generations have to start between minTicks and maxTicks long");
+        return this;
+    }
+
+    int minTicks() { // with the 0 defaults worked out
+        return minTicks > 0 ? minTicks : Math.max(2, ticks / 4);
+    }
+
+    int maxTicks() {
+        return maxTicks > 0 ? maxTicks : ticks * 4;
+    }
+
+    private double[] raceFractions() {
+        return raceAt.isBlank() ? new double[0] : Arrays.stream(raceAt.split(",")).mapToDouble(f -> Double.parseDouble(f.trim())).toArray();
+    }
+
+    int[] raceTicks(int ticks) { // the ticks raceAt works out to in a generation that long, in order and without repeats
+        return Arrays.stream(raceFractions()).mapToInt(f -> (int) Math.round(f * (ticks - 1))).filter(t -> t > 0 && t < ticks - 1).sorted().distinct().toArray();
+    }
+
+    Activation[] layerActivations() { // one per evaluated layer
+        return Activation.parse(activations, hidden);
+    }
+
+    NeuralNetwork newNetwork(SplittableRandom rnd) { // a sweeper brain of the configured shape, with random weights (all zero when rnd is null)
+        NeuralNetwork net = new NeuralNetwork(Params.INPUTS, Params.OUTPUTS, hidden, neuronsPerHidden, rnd);
+        net.setActivations(layerActivations(), activationResponse);
+        if (compiledInference) {
+            net.compile();
+        }
+        return net;
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -3,42 +3,44 @@ package neuralnet2;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
-import neuralnet2.GeneticAlg.Genome;
-
 @SuppressWarnings("serial")
 public class ControllerMS extends JPanel implements ActionListener {
 
-    private int ticks;                       // tick counter for a run of a generation's agents
-    private int generations;                 // the counter for which generation the sim's on
-    private int numAgents;                   // how many agents
-    private GeneticAlg GA;                   // the genetic algorithm that manages the genome weights
-    private ArrayList<Genome> pop;           // the weights of the neural nets for each of the agents
-    private ArrayList<AgentMS> agents;       // the agents themselves (the sweepers)
-    private ArrayList<Point2D> goodMines;    // the goodMines
-    private ArrayList<Point2D> badMines;     // the badMines
-    private ArrayList<Double> avgFitness;    // useful if you were plotting the progression of fitness
-    private ArrayList<Double> bestFitness;
+    private static final Path CHECKPOINT = Paths.get("tmp/game-state/checkpoint.msck");
+
+    private SimLoopMS loop;                  // runs the simulation (agents, mines and the genetic algorithm) on its own thread
     private BufferedImage pic;               // the image in which things are drawn
+    private SpriteRendererMS renderer;       // draws frames into pic
     private Image asteroid;
     private JLabel picLabel;                 // the label that holds the image
     private JLabel dataLabel;                // the label that holds the fitness information
     private JLabel tickLabel;                // the label that holds how many ticks are left in the current generation
     private JButton saveBtn;
     private JButton loadBtn;
+    private JButton speedBtn;                // cycles through how fast the simulation runs
     private DecimalFormat df;
-
-    ControllerMS(int xDim, int yDim) {
+    private Timer timer;                     // draws the newest frame from the simulation, FPS times a second at most
+    private int shownGeneration, shownTicksLeft; // what the last drawn frame was of
+    private long lastLabelUpdate;            // when tickLabel last changed, so it isn't relaid out every frame
+    private AutosaveMS autosave;             // writes checkpoints and screenshots off of the event thread
+    private FitnessLogMS fitnessLog;         // the simulation's fitness history, safe to read from here
+    private FitnessChartMS chart;            // which shows it under the game
+    private boolean savedOnExit;
+
+    ControllerMS(Config config, int xDim, int yDim) { // xDim by yDim is the size of the picture, the world is scaled to fit it
         setBackground(Color.LIGHT_GRAY);
         setFocusable(true);
         setDoubleBuffered(true);
@@ -47,7 +49,7 @@ public class ControllerMS extends JPanel implements ActionListener {
         picLabel = new JLabel(new ImageIcon(pic));
         dataLabel = new JLabel("", SwingConstants.CENTER);
         dataLabel.setFont(new Font("Helvetica", Font.BOLD, 20));
-        tickLabel = new JLabel("Ticks Left: " + (1600 - ticks));
+        tickLabel = new JLabel("Ticks Left: " + config.ticks);
         tickLabel.setFont(new Font("Helvetica", Font.PLAIN, 18));
         tickLabel.setPreferredSize(new Dimension(150, 20));
         try {
@@ -56,39 +58,26 @@ public class ControllerMS extends JPanel implements ActionListener {
             e.printStackTrace();
         }
 
+        renderer = new SpriteRendererMS(pic, asteroid, config.worldWidth, config.worldHeight);
+
         // initialize all of the variables!
-        numAgents = Params.SWEEPERS;
-        ticks = 0;
-        generations = 0;
-        avgFitness = new ArrayList<>();
-        bestFitness = new ArrayList<>();
         df = new DecimalFormat("#0.00");
-
-        // make up agents
-        agents = new ArrayList<>(numAgents);
-        for (int i = 0; i < numAgents; i++) {
-            agents.add(new AgentMS());
-        }
-
-        // give agent neural nets their weights
-        GA = new GeneticAlg(numAgents, Params.MUTATION_RATE, Params.CROSSOVER_RATE, agents.get(0).getNumberOfWeights());
-        pop = GA.getChromosomes();
-        for (int i = 0; i < numAgents; i++) {
-            agents.get(i).setWeights(pop.get(i).getWeights());
-        }
-
-        // set up the goodMines
-        goodMines = new ArrayList<>(Params.GOODMINES);
-        badMines = new ArrayList<>(Params.BADMINES);
-        Random rnd = new Random();
-        for (int i = 0; i < Params.MINES; i++) {
-            if (i < Params.GOODMINES) {
-                goodMines.add(new Point2D.Double(rnd.nextDouble() * xDim, rnd.nextDouble() * yDim));
-            }
-            if (i >= Params.GOODMINES) {
-                badMines.add(new Point2D.Double(rnd.nextDouble() * xDim, rnd.nextDouble() * yDim));
-            }
+        shownGeneration = -1;
+        autosave = new AutosaveMS(Paths.get(Params.AUTOSAVE_DIR), Params.AUTOSAVE_KEEP);
+        long seed = Params.seed(config.seed);
+        SimulationMS sim = new SimulationMS(config, new SplittableRandom(seed));
+        fitnessLog = sim.getFitnessLog();
+        try {
+            fitnessLog.openCsv(Paths.get(Params.FITNESS_LOG_DIR, "fitness-" + seed + ".csv"));
+        } catch (IOException e) {
+            System.err.println("Couldn't start the fitness log: " + e.getMessage());
         }
+        chart = new FitnessChartMS(fitnessLog.getCapacity(), xDim, Params.CHART_HEIGHT);
+        loop = new SimLoopMS(sim, autosave, Params.START_SPEED);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> { // e.g. ctrl-c, closing the window saves before it gets here
+            saveOnExit();
+            autosave.flush(10_000);
+        }, "save-on-exit"));
 
         // add Key Bindings
         getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(KeyStroke.getKeyStroke("P"), Params.SWITCH_VISUALIZATION);
@@ -98,94 +87,55 @@ public class ControllerMS extends JPanel implements ActionListener {
         addThingsToPanel();
 
         // start it up!
-        // timer runs the simulation
-        Timer timer = new Timer(1, this);
+        // the simulation runs on its own thread, the timer just shows what it's up to
+        loop.start();
+        timer = new Timer(1000 / Params.FPS, this);
         timer.start();
     }
 
-    private void drawThings(Graphics2D g) {
-        // cover everything with a blank screen
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, pic.getWidth(), pic.getHeight());
-        // draw agents
-        for (AgentMS a : agents) {
-            a.draw(g);
-        }
-        // draw good mines
-        g.setColor(new Color(0, 123, 167));
-        for (Point2D m : goodMines) {
-            g.fillOval((int) (m.getX() - Params.MINE_SIZE / 2), (int) (m.getY() - Params.MINE_SIZE / 2), (int) Params.MINE_SIZE, (int) Params.MINE_SIZE);
-        }
-
-        // draw bad mines
-        g.setColor(Color.RED);
-        for (Point2D m : badMines) {
-            g.drawImage(asteroid, (int) m.getX() - 9, (int) m.getY() - 9, null);
-//            g.fillRect((int) (m.getX() - Params.MINE_SIZE / 2), (int) (m.getY() - Params.MINE_SIZE / 2), (int) Params.MINE_SIZE, (int) Params.MINE_SIZE);
-        }
-    }
-
-    @SuppressWarnings("unchecked")
     private void initBtn() {
         saveBtn = new JButton("Save");
         saveBtn.addActionListener(e -> {
+            // only the copying happens on the simulation and event threads, the writing and png encoding happen in the background
+            loop.submit(sim -> autosave.save(CheckpointMS.capture(sim), CHECKPOINT));
+            BufferedImage img = new BufferedImage(pic.getWidth(), pic.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = img.createGraphics(); // a copy of the last finished frame, the timer only draws into pic on this thread
             try {
-                save("agents", agents);
-                save("pop", pop);
-                save("goodmines", goodMines);
-                save("badmines", badMines);
-                save("ticks", ticks);
-                save("generations", generations);
-                save("generationsText", dataLabel.getText());
-
-                System.out.println("Serialized data saved.");
-
-                BufferedImage img = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-                paint(img.getGraphics());
-                File outputFile = new File("tmp/screenshots/Gen" + generations + "@" + (1600 - ticks) + "Ticks" + ".png");
-                ImageIO.write(img, "png", outputFile);
-            } catch (IOException e1) {
-                e1.printStackTrace();
+                g.drawImage(pic, 0, 0, null);
+            } finally {
+                g.dispose();
             }
+            autosave.save(img, Paths.get("tmp/screenshots/Gen" + shownGeneration + "@" + shownTicksLeft + "Ticks" + ".png"));
         });
         loadBtn = new JButton("Load");
-        loadBtn.addActionListener(e -> {
-            boolean oldVisualizationState = agents.get(0).isInputVisualized();
-            agents = (ArrayList<AgentMS>) load("agents", agents);
-            if (agents.get(0).isInputVisualized() != oldVisualizationState) switchVisualization();
-            pop = (ArrayList<Genome>) load("pop", pop);
-            goodMines = (ArrayList<Point2D>) load("goodmines", goodMines);
-            badMines = (ArrayList<Point2D>) load("badmines", badMines);
-            ticks = (int) load("ticks", ticks);
-            generations = (int) load("generations", generations);
-            dataLabel.setText((String) load("generationsText", dataLabel.getText()));
+        loadBtn.addActionListener(e -> loop.submit(sim -> { // between ticks, so the simulation isn't changed under its own feet
+            try {
+                CheckpointMS checkpoint = CheckpointMS.read(CHECKPOINT);
+                checkpoint.restore(sim);
+                if (checkpoint.isInputsVisualized() != sim.getWorld().getAgents().get(0).isInputVisualized()) flipVisualization(sim);
+            } catch (NoSuchFileException e1) {
+                System.out.println("Please save before loading!");
+            } catch (IOException e1) {
+                System.out.println("Couldn't load " + CHECKPOINT + ": " + e1.getMessage());
+            }
+        }));
+        speedBtn = new JButton(speedText(loop.getSpeed()));
+        speedBtn.addActionListener(e -> {
+            loop.setSpeed(loop.getSpeed().next());
+            speedBtn.setText(speedText(loop.getSpeed()));
         });
     }
 
-    private void save(String filename, Object toBeSaved) {
-        try {
-            FileOutputStream fileOut = new FileOutputStream(new File("tmp/game-state/" + filename + ".ser"));
-            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-            objectOut.writeObject(toBeSaved);
-            objectOut.close();
-            fileOut.close();
-        } catch (IOException e1) {
-            e1.printStackTrace();
-        }
+    private static String speedText(SimLoopMS.Speed speed) {
+        return speed == SimLoopMS.Speed.UNLIMITED ? "Speed: max" : "Speed: " + speed.ticksPerSecond / Params.TICKS_PER_SECOND + "x";
     }
 
-    private Object load(String filename, Object currentState) {
-        try {
-            FileInputStream fileIn = new FileInputStream("tmp/game-state/" + filename + ".ser");
-            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-            Object toBeLoaded = objectIn.readObject();
-            objectIn.close();
-            fileIn.close();
-            return toBeLoaded;
-        } catch (IOException | ClassNotFoundException e1) {
-            System.out.println("Please save " + filename + " before loading!");
-            return currentState;
+    private void showGenerationStats(FrameMS frame) { // how the last finished generation did
+        if (!frame.hasStats()) {
+            dataLabel.setText("");
+            return;
         }
+        dataLabel.setText("Generation " + frame.getGeneration() + " has average fitness of " + df.format(frame.getAvgFitness()) + " and best fitness of " + (int) frame.getBestFitness() + ".");
     }
 
     private void addThingsToPanel() {
@@ -212,60 +162,52 @@ public class ControllerMS extends JPanel implements ActionListener {
         add(dataLabel, c); // (1, 1)
         c.anchor = GridBagConstraints.EAST;
         c.gridx = 2;
+        c.gridheight = 1;
         add(tickLabel, c); // (2, 1)
+        c.gridy = 2;
+        add(speedBtn, c); // (2, 2)
+        c.insets = new Insets(5, 5, 5, 5);
+        c.anchor = GridBagConstraints.CENTER;
+        c.gridx = 0;
+        c.gridy = 3;
+        c.gridwidth = 3;
+        add(chart, c); // (0, 3)
     }
 
-    private void updateAgents() {
-        ticks++;  // count ticks to set the length of the generation run
-        if (ticks < Params.TICKS) { // do another tick toward finishing a generation
-            Random rnd = new Random();
-            // update each agent by calling their update function and checking to see if they got a mine
-            for (int i = 0; i < numAgents; i++) {
-                if (!agents.get(i).update(goodMines, badMines)) {
-                    System.err.println("!! wrong amount of neural net inputs !!");
-                    break;
-                }
-                // did it find a mine
-                int closestMine = agents.get(i).getClosestMine(goodMines);
-                int foundMine = agents.get(i).checkForMine(goodMines, closestMine);
-                // if it found a mine, add to that agent's fitness and make a new mine
-                if (foundMine >= 0) {
-                    agents.get(i).incrementFitness();
-                    goodMines.set(foundMine, new Point2D.Double(rnd.nextDouble() * pic.getWidth(), rnd.nextDouble() * pic.getHeight()));
-                }
-
-                closestMine = agents.get(i).getClosestMine(badMines);
-                foundMine = agents.get(i).checkForMine(badMines, closestMine);
-                if (foundMine >= 0) {
-                    agents.get(i).deIncrimentFitness();
-                    badMines.set(foundMine, new Point2D.Double(rnd.nextDouble() * pic.getWidth(), rnd.nextDouble() * pic.getHeight()));
-                }
+    @Override
+    public void actionPerformed(ActionEvent e) { // draws whatever the simulation got up to since the last frame, skipping the ticks in between
+        FrameMS frame = loop.takeFrame();
+        if (frame == null) {
+            return;
+        }
+        long start = StatsMS.start();
+        renderer.draw(frame);
+        StatsMS.end(StatsMS.Phase.RENDER, start);
 
-                // keep track of that agent's fitness in the GA as well as the NN
-                pop.get(i).setFitness(agents.get(i).getFitness());
-            }
-        } else { // a generation has completed, run the genetic algorithm and update the agents
-//            avgFitness.add(GA.avgFitness());
-//            bestFitness.add(GA.bestFitness());
-//            System.out.println("avgFitness = " + avgFitness);
-//            System.out.println("bestFitness = " + bestFitness);
-            generations++;
-            ticks = 0;
-            pop = GA.epoch(pop); // the big genetic algorithm process line
-            dataLabel.setText("Generation " + generations + " has average fitness of " + df.format(GA.avgFitness()) + " and best fitness of " + (int) GA.bestFitness() + ".");
-            for (int i = 0; i < numAgents; i++) { // give the agents all the new weights information
-                agents.get(i).setWeights(pop.get(i).getWeights());
-                agents.get(i).reset();
-            }
+        if (frame.getGeneration() != shownGeneration) { // a generation has completed, show how it went
+            showGenerationStats(frame);
+            chart.update(fitnessLog);
         }
-        tickLabel.setText("Ticks Left: " + (1600 - ticks));
+        shownGeneration = frame.getGeneration();
+        shownTicksLeft = frame.getTicksLeft();
+        long now = System.currentTimeMillis();
+        if (now - lastLabelUpdate >= Params.LABEL_INTERVAL_MS) {
+            tickLabel.setText("Ticks Left: " + shownTicksLeft);
+            lastLabelUpdate = now;
+        }
+        loop.giveBack(frame);
+        repaint();
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        updateAgents();
-        drawThings((Graphics2D) pic.getGraphics());
-        repaint();
+    synchronized void saveOnExit() { // as the window closes, or from the shutdown hook
+        if (!savedOnExit) {
+            savedOnExit = true;
+            loop.stop();
+            autosave.saveOnExit("autosave", CheckpointMS.capture(loop.getSim()));
+            if (StatsMS.ENABLED) {
+                System.out.println(StatsMS.report());
+            }
+        }
     }
 
     private class KeyVisualizationAction extends AbstractAction {
@@ -276,7 +218,11 @@ public class ControllerMS extends JPanel implements ActionListener {
     }
 
     void switchVisualization() {
-        for (AgentMS agent : agents) {
+        loop.submit(ControllerMS::flipVisualization);
+    }
+
+    private static void flipVisualization(SimulationMS sim) {
+        for (AgentMS agent : sim.getWorld().getAgents()) {
             agent.flipInputVisualization();
         }
     }
@@ -0,0 +1,70 @@
+package neuralnet2;
+
+class Convergence {                          // watches each generation's best and average fitness for the point where training stops paying off
+
+    enum Action {                            // what to do about a plateau
+        STOP,                                // end the run
+        GROW,                                // double the generation length (a longer run sorts the genomes out more finely), stop once it's at maxTicks
+        SHRINK                               // halve it (more, cheaper generations to explore with), stop once it's at minTicks
+    }
+
+    private int window;                      // how many generations a plateau has to last
+    private double minGain;                  // the best fitness has to beat the best before the window by more than this
+    private double maxSpread;                // or the average fitness has to vary (standard deviation) by at least this much (0 leaves this out)
+    private double[] best, avg;              // the last window generations, oldest first from next
+    private int next, count;
+    private double bestBefore;               // the best fitness of the generations older than the window
+
+    Convergence(int window, double minGain, double maxSpread) {
+        this.window = window;
+        this.minGain = minGain;
+        this.maxSpread = maxSpread;
+        best = new double[window];
+        avg = new double[window];
+        clear();
+    }
+
+    void clear() { // forget the history, e.g. when the generation length changes and fitness with it
+        next = 0;
+        count = 0;
+        bestBefore = Double.NEGATIVE_INFINITY;
+    }
+
+    // adds a generation, then returns why the fitness has plateaued, or null if it hasn't (or there isn't enough history to say)
+    String add(double bestFitness, double avgFitness) {
+        if (window <= 0) {
+            return null;
+        }
+        if (count == window) {
+            bestBefore = Math.max(bestBefore, best[next]);
+        } else {
+            count++;
+        }
+        best[next] = bestFitness;
+        avg[next] = avgFitness;
+        next = (next + 1) % window;
+        if (count < window) {
+            return null;
+        }
+
+        double recentBest = Double.NEGATIVE_INFINITY, mean = 0;
+        for (int i = 0; i < window; i++) {
+            recentBest = Math.max(recentBest, best[i]);
+            mean += avg[i];
+        }
+        mean /= window;
+        double variance = 0;
+        for (int i = 0; i < window; i++) {
+            variance += (avg[i] - mean) * (avg[i] - mean);
+        }
+        double spread = Math.sqrt(variance / window);
+
+        if (bestBefore > Double.NEGATIVE_INFINITY && recentBest - bestBefore <= minGain) {
+            return "best fitness " + (int) recentBest + " no better than " + (int) bestBefore + " for " + window + " generations";
+        }
+        if (spread < maxSpread) {
+            return String.format("average fitness within %.2f of %.2f for %d generations", spread, mean, window);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package neuralnet2;
+
+import java.awt.*;
+import java.text.DecimalFormat;
+
+import javax.swing.*;
+
+@SuppressWarnings("serial")
+class FitnessChartMS extends JComponent {    // best and average fitness over the last however many generations, drawn under the game
+
+    private double[] best, avg;              // the points, oldest first
+    private int size;
+    private int firstGeneration, lastGeneration;
+    private Color bestColor, avgColor, axisColor;
+    private DecimalFormat df;
+
+    FitnessChartMS(int capacity, int width, int height) {
+        best = new double[capacity];
+        avg = new double[capacity];
+        bestColor = new Color(255, 200, 0);
+        avgColor = new Color(0, 123, 167);
+        axisColor = Color.GRAY;
+        df = new DecimalFormat("#0.#");
+        setPreferredSize(new Dimension(width, height));
+    }
+
+    void update(FitnessLogMS log) { // copies the newest generations out of the log, call when a generation has finished
+        size = log.copy(best, avg);
+        lastGeneration = log.getLastGeneration();
+        firstGeneration = lastGeneration - size + 1;
+        repaint();
+    }
+
+    void setData(FitnessLogMS.Downsampled d) { // a whole run read back from a CSV log
+        if (best.length < d.size) {
+            best = new double[d.size];
+            avg = new double[d.size];
+        }
+        System.arraycopy(d.best, 0, best, 0, d.size);
+        System.arraycopy(d.avg, 0, avg, 0, d.size);
+        size = d.size;
+        firstGeneration = size > 0 ? d.generation[0] : 0;
+        lastGeneration = size > 0 ? d.generation[size - 1] : 0;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        draw((Graphics2D) g, getWidth(), getHeight());
+    }
+
+    void draw(Graphics2D g, int width, int height) {
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, width, height);
+        if (size == 0) {
+            return;
+        }
+        double min = 0, max = 1;             // zero is always on the chart, fitness can go either way
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, Math.min(best[i], avg[i]));
+            max = Math.max(max, Math.max(best[i], avg[i]));
+        }
+        int left = 40, top = 5, right = width - 5, bottom = height - 15;
+        double yScale = (bottom - top) / (max - min);
+        double xScale = size > 1 ? (double) (right - left) / (size - 1) : 0;
+
+        g.setColor(axisColor);
+        int zero = bottom - (int) ((0 - min) * yScale);
+        g.drawLine(left, zero, right, zero);
+        g.drawString(df.format(max), 2, top + 10);
+        g.drawString(df.format(min), 2, bottom);
+        g.drawString("generation " + firstGeneration, left, height - 2);
+        String last = "generation " + lastGeneration;
+        g.drawString(last, right - g.getFontMetrics().stringWidth(last), height - 2);
+
+        line(g, avg, avgColor, left, bottom, min, xScale, yScale);
+        line(g, best, bestColor, left, bottom, min, xScale, yScale);
+    }
+
+    private void line(Graphics2D g, double[] values, Color color, int left, int bottom, double min, double xScale, double yScale) {
+        g.setColor(color);
+        int lastX = left, lastY = bottom - (int) ((values[0] - min) * yScale);
+        for (int i = 1; i < size; i++) {
+            int x = left + (int) (i * xScale), y = bottom - (int) ((values[i] - min) * yScale);
+            g.drawLine(lastX, lastY, x, y);
+            lastX = x;
+            lastY = y;
+        }
+    }
+}
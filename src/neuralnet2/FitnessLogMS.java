@@ -0,0 +1,173 @@
+package neuralnet2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class FitnessLogMS {                         // each generation's fitness stats: the newest few kept in memory for the chart, every one of them streamed to a CSV file
+
+    static final String HEADER = "generation,best,average,worst,total,diversity,elapsed_ms";
+
+    private double[] best, avg;              // a ring buffer of the newest generations
+    private int first;                       // where the oldest one is in the ring
+    private int count;                       // how many are in it
+    private int lastGeneration;              // the generation the newest one is for
+    private BufferedWriter csv;              // null when not logging to a file
+    private long startNanos;
+
+    FitnessLogMS(int capacity) {
+        best = new double[Math.max(1, capacity)];
+        avg = new double[best.length];
+        startNanos = System.nanoTime();
+    }
+
+    void openCsv(Path file) throws IOException { // appends, so a run that's been loaded from a checkpoint carries on in the same file
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+        csv = Files.newBufferedWriter(file, StandardCharsets.US_ASCII, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (isNew) {
+            csv.write(HEADER);
+            csv.newLine();
+            csv.flush();
+        }
+    }
+
+    void add(int generation, GeneticAlg GA) { // called as each generation finishes
+        synchronized (this) {
+            int at = (first + count) % best.length;
+            best[at] = GA.bestFitness();
+            avg[at] = GA.avgFitness();
+            if (count < best.length) {
+                count++;
+            } else {
+                first = (first + 1) % best.length;
+            }
+            lastGeneration = generation;
+        }
+        if (csv != null) {
+            try { // flushed every line so the file can be watched (or plotted) while the run goes on
+                csv.write(generation + "," + GA.bestFitness() + "," + GA.avgFitness() + "," + GA.worstFitness() + "," + GA.totalFitness()
+                        + "," + GA.diversity() + "," + (System.nanoTime() - startNanos) / 1_000_000);
+                csv.newLine();
+                csv.flush();
+            } catch (IOException e) {
+                System.err.println("Couldn't write the fitness log, stopping it: " + e.getMessage());
+                close();
+            }
+        }
+    }
+
+    void close() {
+        if (csv != null) {
+            try {
+                csv.close();
+            } catch (IOException e) {
+                // nothing more to be done about it
+            }
+            csv = null;
+        }
+    }
+
+    synchronized int copy(double[] best, double[] avg) { // oldest first into arrays at least getCapacity() long, returns how many
+        for (int i = 0; i < count; i++) {
+            best[i] = this.best[(first + i) % this.best.length];
+            avg[i] = this.avg[(first + i) % this.avg.length];
+        }
+        return count;
+    }
+
+    synchronized void restore(double[] best, double[] avg, int lastGeneration) { // e.g. from a checkpoint, keeping the newest that fit
+        int from = Math.max(0, best.length - this.best.length);
+        first = 0;
+        count = best.length - from;
+        System.arraycopy(best, from, this.best, 0, count);
+        System.arraycopy(avg, from, this.avg, 0, count);
+        this.lastGeneration = lastGeneration;
+    }
+
+    // self-explanatory
+    int getCapacity() {
+        return best.length;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized int getLastGeneration() {
+        return lastGeneration;
+    }
+
+    synchronized double lastBest() {
+        return best[(first + count - 1) % best.length];
+    }
+
+    synchronized double lastAvg() {
+        return avg[(first + count - 1) % avg.length];
+    }
+
+    // reads a fitness log of any length into at most `points` points, streaming through the file twice so it's never all in memory;
+    // each point is one stretch of generations, with the best of their best fitnesses and the mean of their average ones
+    static Downsampled readDownsampled(Path file, int points) throws IOException {
+        long rows = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            while (in.readLine() != null) {
+                rows++;
+            }
+        }
+        rows = Math.max(0, rows - 1); // the header
+        long perPoint = Math.max(1, (rows + points - 1) / points);
+        Downsampled d = new Downsampled((int) Math.min(points, rows));
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line = in.readLine(); // the header
+            long row = 0;
+            int inPoint = 0;
+            while ((line = in.readLine()) != null) {
+                String[] cols = line.split(",");
+                int generation;
+                double b, a;
+                try {
+                    generation = Integer.parseInt(cols[0]);
+                    b = Double.parseDouble(cols[1]);
+                    a = Double.parseDouble(cols[2]);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) { // e.g. a line cut short by a crash
+                    continue;
+                }
+                int p = (int) (row++ / perPoint);
+                if (p >= d.best.length) {
+                    break;
+                }
+                if (inPoint == 0 || p != d.size - 1) { // the start of a new point
+                    d.generation[p] = generation;
+                    d.best[p] = b;
+                    d.avg[p] = a;
+                    d.size = p + 1;
+                    inPoint = 1;
+                } else {
+                    d.best[p] = Math.max(d.best[p], b);
+                    d.avg[p] = (d.avg[p] * inPoint + a) / (inPoint + 1);
+                    inPoint++;
+                }
+            }
+        }
+        return d;
+    }
+
+    static class Downsampled {
+        final int[] generation;              // the first generation of each point
+        final double[] best, avg;
+        int size;
+
+        Downsampled(int points) {
+            generation = new int[points];
+            best = new double[points];
+            avg = new double[points];
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package neuralnet2;
+
+import java.util.ArrayList;
+
+class FrameMS {                              // a picture of the shown world at one tick, copied out so it can be drawn while the simulation carries on
+
+    private int numAgents;
+    private double[] agents;                 // AgentMS.DRAW_SIZE values per agent
+    private int numGood, numBad;
+    private double[] goodMines, badMines;    // x/y pairs
+    private int mineVersion;                 // WorldMS.getMineVersion when the mines were copied
+    private boolean inputsVisualized;
+    private int generation, ticksLeft;
+    private boolean hasStats;                // whether a generation has finished yet
+    private double avgFitness, bestFitness;  // of the last generation to finish
+
+    FrameMS() {
+        agents = new double[0];
+        goodMines = new double[0];
+        badMines = new double[0];
+        mineVersion = -1;
+    }
+
+    void capture(SimulationMS sim) { // only ever called on a frame nobody is drawing, the arrays are reused from frame to frame
+        WorldMS world = sim.getWorld();
+        ArrayList<AgentMS> list = world.getAgents();
+        numAgents = list.size();
+        if (agents.length < numAgents * AgentMS.DRAW_SIZE) {
+            agents = new double[numAgents * AgentMS.DRAW_SIZE];
+        }
+        for (int i = 0; i < numAgents; i++) {
+            list.get(i).getDrawState(agents, i * AgentMS.DRAW_SIZE);
+        }
+        inputsVisualized = numAgents > 0 && list.get(0).isInputVisualized();
+        if (world.getMineVersion() != mineVersion) { // most ticks nobody sweeps anything up
+            numGood = world.getGoodMines().size();
+            goodMines = world.getGoodMines().copy(goodMines);
+            numBad = world.getBadMines().size();
+            badMines = world.getBadMines().copy(badMines);
+            mineVersion = world.getMineVersion();
+        }
+
+        generation = sim.getGenerations();
+        ticksLeft = sim.getTicksLeft();
+        FitnessLogMS log = sim.getFitnessLog();
+        hasStats = log.size() > 0;
+        if (hasStats) {
+            avgFitness = log.lastAvg();
+            bestFitness = log.lastBest();
+        }
+    }
+
+    // self-explanatory
+    int getNumAgents() {
+        return numAgents;
+    }
+
+    double[] getAgents() {
+        return agents;
+    }
+
+    boolean isInputsVisualized() {
+        return inputsVisualized;
+    }
+
+    int getNumGoodMines() {
+        return numGood;
+    }
+
+    double[] getGoodMines() {
+        return goodMines;
+    }
+
+    int getNumBadMines() {
+        return numBad;
+    }
+
+    double[] getBadMines() {
+        return badMines;
+    }
+
+    int getMineVersion() {
+        return mineVersion;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    int getTicksLeft() {
+        return ticksLeft;
+    }
+
+    boolean hasStats() {
+        return hasStats;
+    }
+
+    double getAvgFitness() {
+        return avgFitness;
+    }
+
+    double getBestFitness() {
+        return bestFitness;
+    }
+}
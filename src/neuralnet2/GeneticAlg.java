@@ -1,75 +1,42 @@
 package neuralnet2;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
 
-public class GeneticAlg implements Serializable {
+public class GeneticAlg {
 
-    class Genome implements Comparable<Genome>, Serializable {      // a simple class to handle a single genome
-        private ArrayList<Double> weights;            // since no other class needs to know how Genome is implemented
-        private double fitness;                       // it is a subclass of the genetic algorithm class
-
-        Genome() {
-            weights = new ArrayList<>();              // here the 'chromosomes' for a genetic alg influenced by a neural net are the weights of the neuron's inputs
-            fitness = 0;                              // fitness increases as the genome becomes more fit
-        }
-
-        Genome(ArrayList<Double> w, double f) {
-            weights = new ArrayList<>();
-            for (Double d : w) {
-                weights.add(d);
-            }
-            fitness = f;
-        }
-
-        public Genome clone() {                       // mmm, cloning genomes
-            return new Genome(weights, fitness);
-        }
-
-        ArrayList<Double> getWeights() {
-            return weights;
-        }
-
-        double getFitness() {
-            return fitness;
-        }
-
-        void setFitness(double f) {
-            fitness = f;
-        }
-
-        @Override
-        public int compareTo(Genome o) {                    // the comparable interface needs a definition of compareTo
-            if (this.fitness > o.getFitness()) {            // the interface is being used so that the genomes can be sorted by fitness
-                return 1;
-            } else if (this.fitness < o.getFitness()) {
-                return -1;
-            }
-            return 0;
-        }
-    }
-
-    private ArrayList<Genome> pop;      // the genomes (weights for neural nets) who are the members of the genetic algorithm's gene pool
+    private GenomeArena arena;          // the genomes (weights for neural nets) who are the members of the genetic algorithm's gene pool, and their children to be
     private int popSize;                // the pools' size
     private int chromosomeLength;       // the length of the weights list
     private double totalFitness;        // the summation of all the genomes' fitnesses
     private double bestFitness;         // the best fitness of all the genomes, then the average, then the worst
     private double avgFitness;          // could be used for plotting fitnesses
     private double worstFitness;
+    private double diversity;           // how spread out the genomes are, the standard deviation of each weight averaged over the weights
     private int fittestGenome;          // the index of the most fit genome in the population
     private int genCount;               // what generation the pool has made it to
     private double mutationRate;        // how often mutation (for each entry in a weight list) and crossover occurs
     private double crossoverRate;
-    private ArrayList<Double> child1;
-    private ArrayList<Double> child2;
+    private double maxPerturbation;     // the most a mutation moves a weight
+    private int numElite, numCopiesElite; // how many of the fittest go through to the next generation unchanged, and how many times each
+    private boolean parallelEpoch;      // breed the children across threads (the same children, just sooner)
+    private SplittableRandom rnd;       // the GA's own random numbers
+    private Selection selection;        // how parents are picked
+    private double[] fitness;           // the population's fitness in order, for the selection
+    private int[] order;                // the genomes from least to most fit
+    private int[] sortBuffer;
 
-    GeneticAlg(int populationSize, double mutRate, double crossRate, int numWeights) {
-        popSize = populationSize;
-        mutationRate = mutRate;
-        crossoverRate = crossRate;
+    GeneticAlg(Config config, int numWeights, SplittableRandom rnd) { // one genome per sweeper
+        this.rnd = rnd;
+        popSize = config.sweepers;
+        mutationRate = config.mutationRate;
+        crossoverRate = config.crossoverRate;
+        maxPerturbation = config.maxPerturbation;
+        numElite = config.numElite;
+        numCopiesElite = config.numCopiesElite;
+        parallelEpoch = config.parallelEpoch;
         chromosomeLength = numWeights;
         totalFitness = 0;
         genCount = 0;
@@ -77,109 +44,240 @@ public class GeneticAlg implements Serializable {
         bestFitness = 0;
         worstFitness = 99999999;
         avgFitness = 0;
+        selection = config.selection.create(config.tournamentSize);
+        fitness = new double[popSize];
+        order = new int[popSize];
+        sortBuffer = new int[popSize];
         // initialize population with randomly generated weights
-        pop = new ArrayList<>();
-        Random rnd = new Random();
-        for (int i = 0; i < popSize; i++) {
-            pop.add(new Genome());
-            for (int j = 0; j < chromosomeLength; j++) {
-                pop.get(i).weights.add(rnd.nextDouble() * 2 - 1);
-            }
+        arena = new GenomeArena(popSize, chromosomeLength);
+        double[] weights = arena.weights();
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = rnd.nextDouble() * 2 - 1;
         }
     }
 
-    private int randInt(int min, int max) {
-        return min + (int) (Math.random() * max);
+    private static int randInt(int min, int max, RandomGenerator rnd) {
+        return min + (int) (rnd.nextDouble() * max);
     }
 
-    @SuppressWarnings("unchecked")
-    public void crossover(ArrayList<Double> parent1, ArrayList<Double> parent2) {
-        // implement crossover, similar to the previous project
+    // the children are written straight into their slots: child one gets parent one's weights up to the crossover point and parent two's
+    // after it, child two the other way round (no crossover, and they're plain copies); every argument but the blocks is an offset into one
+    public void crossover(double[] parents, int parent1, int parent2, double[] children, int child1, int child2) {
+        crossover(parents, parent1, parent2, children, child1, child2, rnd);
+    }
 
-        if (Math.random() > Params.CROSSOVER_RATE) {
-            int crossoverIndex = randInt(1, parent1.size() - 1);
-            int parentSize = parent1.size();
-            for (int i = crossoverIndex; i < parentSize; i++) {
-                parent1.add(parent2.get(i));
-                parent2.add(parent1.get(i));
-            }
-            parent1.subList(parentSize, parentSize + (parentSize - crossoverIndex)).clear(); // remove the crossed over section that was added to other parent
-            parent2.subList(parentSize, parentSize + (parentSize - crossoverIndex)).clear();
+    private void crossover(double[] parents, int parent1, int parent2, double[] children, int child1, int child2, RandomGenerator rnd) {
+        int crossoverIndex = chromosomeLength;
+        if (rnd.nextDouble() > crossoverRate) {
+            crossoverIndex = randInt(1, chromosomeLength - 1, rnd);
+        }
+        int rest = chromosomeLength - crossoverIndex;
+        System.arraycopy(parents, parent1, children, child1, crossoverIndex);
+        System.arraycopy(parents, parent2 + crossoverIndex, children, child1 + crossoverIndex, rest);
+        if (child2 >= 0) {                            // -1 when there's only room left for one child
+            System.arraycopy(parents, parent2, children, child2, crossoverIndex);
+            System.arraycopy(parents, parent1 + crossoverIndex, children, child2 + crossoverIndex, rest);
         }
     }
 
-    public void mutate(ArrayList<Double> chromo) {
+    public void mutate(double[] chromos, int from) {
+        mutate(chromos, from, rnd);
+    }
+
+    private void mutate(double[] chromos, int from, RandomGenerator rnd) {
         // mutate each weight dependent upon the mutation rate
         // the weights are bounded by the maximum allowed perturbation
 
-        if (Math.random() > Params.MUTATION_RATE) {
-            for (int i = 0; i < chromo.size(); i++) {
-                chromo.set(i, chromo.get(i) + (Math.random() * Params.MAX_PERTURBATION - (Params.MAX_PERTURBATION / 2)));
+        if (rnd.nextDouble() > mutationRate) {
+            for (int i = from; i < from + chromosomeLength; i++) {
+                chromos[i] += rnd.nextDouble() * maxPerturbation - (maxPerturbation / 2);
             }
         }
     }
 
-    public Genome getChromoByRoulette() {        // random parent selection using a roulette approach
-        Random rnd = new Random();
-        double stop = rnd.nextDouble() * totalFitness;    // pick a random fitness value at which to stop
-        double fitnessSoFar = 0;
-        int i = 0;
-        do {
-            fitnessSoFar += pop.get(i).fitness;
-            i++;
-        } while (fitnessSoFar < stop);
-        return pop.get(i - 1).clone();
+    public int selectParent() {                  // random parent selection, by whichever Selection the GA was set up with
+        return order[selection.select(rnd)];
+    }
+
+    void setSelection(Selection selection) {
+        this.selection = selection;
     }
 
-    @SuppressWarnings("unchecked")
-    ArrayList<Genome> epoch(ArrayList<Genome> oldpop) {        // get the new generation from the old generation
-        pop = (ArrayList<Genome>) oldpop.clone();              // the previous population is the current population
+    void epoch() {                                             // breed the next generation from the current one, in place
         reset();                                               // reinitialize fitness stats
-        Collections.sort(pop);                                 // sort them by fitness
+        sortByFitness();                                       // sort them by fitness
         calculateBestWorstAvgTot();                            // calculate the fitness stats
-        ArrayList<Genome> newPop = new ArrayList<>();
-        int parentOneIndex, parentTwoIndex;
-        if (Params.NUM_COPIES_ELITE * Params.NUM_ELITE % 2 == 0) {               // take the top NUM_ELITE performers and add them to the new population
-            grabNBest(Params.NUM_ELITE, Params.NUM_COPIES_ELITE, newPop);
-        }
-        while (newPop.size() < popSize) {                      // fill the rest of the new population by children from parents using the classic genetic algorithm
-            Genome parentOne = getChromoByRoulette();
-            Genome parentTwo = getChromoByRoulette();
-            crossover(parentOne.getWeights(), parentTwo.getWeights());
-            mutate(parentOne.getWeights());
-            mutate(parentTwo.getWeights());
-            newPop.add(parentOne);
-            if (newPop.size() < popSize) {
-                newPop.add(parentTwo);
+        int newPop = 0;
+        if (numCopiesElite * numElite % 2 == 0) {               // take the top numElite performers and add them to the new population
+            for (int nBest = Math.min(numElite, popSize) - 1; nBest >= 0; nBest--) {
+                for (int i = 0; i < numCopiesElite && newPop < popSize; i++) {
+                    arena.copy(order[popSize - 1 - nBest], newPop++);
+                }
             }
         }
-        pop = (ArrayList<Genome>) newPop.clone();
-        return pop;                                            // this probably could have been written better, why return a class variable?
+        for (int i = 0; i < popSize; i++) {
+            fitness[i] = arena.getFitness(order[i]);
+        }
+        int children = popSize - newPop;
+        selection.prepare(fitness, popSize, children + children % 2, rnd); // parents come in pairs
+        int pairs = (children + 1) / 2;                        // fill the rest of the new population by children from parents using the classic genetic algorithm
+        long seed = rnd.nextLong();                            // every pair gets its own stream from this, so it doesn't matter which thread breeds it or when
+        if (parallelEpoch) {
+            WorldMS.pool().invoke(new BreedTask(newPop, seed, 0, pairs));
+        } else {
+            breed(newPop, seed, 0, pairs);
+        }
+        arena.swap();
+    }
+
+    private void breed(int firstChild, long seed, int from, int to) { // breeds the pairs from "from" up to "to" on this thread
+        PairRandom pairRnd = new PairRandom();
+        for (int pair = from; pair < to; pair++) {
+            breed(firstChild, pair, pairRnd.start(seed, pair));
+        }
+    }
+
+    // the pair-th couple's children go in the slots from firstChild + 2 * pair, which are theirs alone (the last pair may only have room for one)
+    private void breed(int firstChild, int pair, RandomGenerator rnd) {
+        int parentOne = arena.offset(order[selection.select(2 * pair, rnd)]);
+        int parentTwo = arena.offset(order[selection.select(2 * pair + 1, rnd)]);
+        int child = firstChild + 2 * pair;
+        int childOne = arena.offset(child);
+        int childTwo = child + 1 < popSize ? arena.offset(child + 1) : -1;
+        double[] next = arena.nextWeights();
+        crossover(arena.weights(), parentOne, parentTwo, next, childOne, childTwo, rnd);
+        mutate(next, childOne, rnd);
+        if (childTwo >= 0) {
+            mutate(next, childTwo, rnd);
+        }
     }
 
-    private void grabNBest(int nBest, int numCopies, ArrayList<Genome> popList) {
-        while (nBest-- > 0) {
-            for (int i = 0; i < numCopies; i++) {
-                popList.add(pop.get(popSize - 1 - nBest));
+    @SuppressWarnings("serial")                  // only ever run, never serialized
+    private class BreedTask extends RecursiveAction { // breeds a range of pairs, splitting it up if it's big
+        private int firstChild, from, to;
+        private long seed;
+
+        BreedTask(int firstChild, long seed, int from, int to) {
+            this.firstChild = firstChild;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > Math.max(8, popSize / (Params.THREADS * 8))) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BreedTask(firstChild, seed, from, mid), new BreedTask(firstChild, seed, mid, to));
+                return;
+            }
+            breed(firstChild, seed, from, to);
+        }
+    }
+
+    // SplitMix64 (what SplittableRandom runs on) with a state that can be set, so a task can start every pair's stream afresh without
+    // making a generator for each; the stream for a pair depends only on the epoch's seed and the pair's number
+    private static final class PairRandom implements RandomGenerator {
+        private static final long GAMMA = 0x9e3779b97f4a7c15L;
+        private long state;
+
+        PairRandom start(long seed, int pair) {
+            state = mix(seed + mix(pair + 1L) * GAMMA);
+            return this;
+        }
+
+        @Override
+        public long nextLong() {
+            return mix(state += GAMMA);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    private void sortByFitness() { // fills order with the genomes from least to most fit, a stable merge sort so ties keep their places
+        for (int i = 0; i < popSize; i++) {
+            order[i] = i;
+        }
+        int[] from = order, to = sortBuffer;
+        for (int width = 1; width < popSize; width *= 2) {
+            for (int lo = 0; lo < popSize; lo += 2 * width) {
+                int mid = Math.min(lo + width, popSize), hi = Math.min(lo + 2 * width, popSize);
+                int a = lo, b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (a < mid && (b >= hi || arena.getFitness(from[a]) <= arena.getFitness(from[b]))) {
+                        to[k] = from[a++];
+                    } else {
+                        to[k] = from[b++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != order) {
+            System.arraycopy(from, 0, order, 0, popSize);
+        }
+    }
+
+    GenomeArena getNBest(int nBest) { // copies of the fittest genomes, e.g. to send to another island
+        sortByFitness();
+        nBest = Math.min(nBest, popSize);
+        GenomeArena best = new GenomeArena(nBest, chromosomeLength);
+        for (int i = 0; i < nBest; i++) {
+            arena.copyTo(order[popSize - nBest + i], best, i);
+        }
+        return best;
+    }
+
+    int getChromosomeLength() {
+        return chromosomeLength;
+    }
+
+    void replaceWorst(List<GenomeArena> newcomers) { // swaps the least fit genomes for the newcomers, fitness and all
+        sortByFitness();
+        int worst = 0;
+        for (GenomeArena arrivals : newcomers) {
+            for (int i = 0; i < arrivals.size() && worst < popSize; i++) {
+                arrivals.copyTo(i, arena, order[worst++]);
             }
         }
     }
 
     private void calculateBestWorstAvgTot() { // fairly self-explanatory, try commenting it
         totalFitness = 0;
-        bestFitness = pop.get(0).getFitness();
-        worstFitness = pop.get(0).getFitness();
-        fittestGenome = 0;
+        bestFitness = arena.getFitness(order[0]);
+        worstFitness = arena.getFitness(order[0]);
+        fittestGenome = order[0];
         for (int i = 0; i < popSize; i++) {
-            if (pop.get(i).fitness > bestFitness) {
-                bestFitness = pop.get(i).fitness;
-                fittestGenome = i;
-            } else if (pop.get(i).fitness < worstFitness) {
-                worstFitness = pop.get(i).fitness;
+            double f = arena.getFitness(order[i]);
+            if (f > bestFitness) {
+                bestFitness = f;
+                fittestGenome = order[i];
+            } else if (f < worstFitness) {
+                worstFitness = f;
             }
-            totalFitness += pop.get(i).fitness;
+            totalFitness += f;
         }
         avgFitness = totalFitness / popSize;
+
+        double[] weights = arena.weights();
+        diversity = 0;
+        for (int j = 0; j < chromosomeLength; j++) {
+            double sum = 0, sumSq = 0;
+            for (int i = 0; i < popSize; i++) {
+                double w = weights[arena.offset(i) + j];
+                sum += w;
+                sumSq += w * w;
+            }
+            double mean = sum / popSize;
+            diversity += Math.sqrt(Math.max(0, sumSq / popSize - mean * mean));
+        }
+        diversity /= chromosomeLength;
     }
 
     private void reset() {        // reset fitness stats
@@ -190,8 +288,8 @@ public class GeneticAlg implements Serializable {
     }
 
     // self-explanatory
-    ArrayList<Genome> getChromosomes() {
-        return pop;
+    GenomeArena getArena() {
+        return arena;
     }
 
     double avgFitness() {
@@ -202,9 +300,16 @@ public class GeneticAlg implements Serializable {
         return bestFitness;
     }
 
-    void setPop(ArrayList<Genome> pop) {
-        this.pop = pop;
+    double worstFitness() {
+        return worstFitness;
+    }
+
+    double totalFitness() {
+        return totalFitness;
     }
 
+    double diversity() {
+        return diversity;
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package neuralnet2;
+
+import java.util.Arrays;
+
+class GenomeArena {                          // the whole population's weights in two flat blocks: the generation being scored, and the one being bred from it
+
+    private int size;                        // how many genomes
+    private int length;                      // how many weights each one has
+    private double[] current;                // genome i's weights are current[i * length] to current[(i + 1) * length - 1]
+    private double[] next;                   // where the genetic algorithm writes the children, swapped with current once they're all there
+    private double[] fitness;                // one per genome in current
+
+    GenomeArena(int size, int length) {
+        this.size = size;
+        this.length = length;
+        current = new double[size * length];
+        next = new double[size * length];
+        fitness = new double[size];
+    }
+
+    int offset(int genome) { // where a genome's weights start in its block
+        return genome * length;
+    }
+
+    void copy(int from, int to) { // a genome of this generation straight into a slot of the next, e.g. an elite
+        System.arraycopy(current, from * length, next, to * length, length);
+    }
+
+    void copyTo(int genome, GenomeArena other, int at) { // one genome, fitness and all, into another arena's current generation
+        System.arraycopy(current, genome * length, other.current, at * length, length);
+        other.fitness[at] = fitness[genome];
+    }
+
+    void swap() { // the next generation becomes the current one, nobody has any fitness yet
+        double[] swap = current;
+        current = next;
+        next = swap;
+        Arrays.fill(fitness, 0);
+    }
+
+    void get(double[] weights, double[] fitness) { // the current generation packed one genome after the other, e.g. for a checkpoint
+        System.arraycopy(current, 0, weights, 0, current.length);
+        System.arraycopy(this.fitness, 0, fitness, 0, size);
+    }
+
+    void set(double[] weights, double[] fitness) {
+        System.arraycopy(weights, 0, current, 0, current.length);
+        System.arraycopy(fitness, 0, this.fitness, 0, size);
+    }
+
+    // self-explanatory
+    int size() {
+        return size;
+    }
+
+    int length() {
+        return length;
+    }
+
+    double[] weights() { // the current block, only good until the next swap
+        return current;
+    }
+
+    double[] nextWeights() {
+        return next;
+    }
+
+    double getFitness(int genome) {
+        return fitness[genome];
+    }
+
+    void setFitness(int genome, double f) {
+        fitness[genome] = f;
+    }
+}
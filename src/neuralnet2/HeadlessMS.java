@@ -0,0 +1,266 @@
+package neuralnet2;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import javax.imageio.ImageIO;
+
+public class HeadlessMS {                    // trains the sweepers as fast as the CPU allows, no window, no timer, no drawing
+
+    private SimulationMS sim;                // a single population (null when running islands)
+    private IslandModelMS islands;           // several populations side by side (null when running a single one)
+    private int numIslands;
+    private Convergence convergence;         // spots when the fitness stops improving
+    private Convergence.Action onPlateau;    // and what to do about it then
+    private int minTicks, maxTicks;          // the shortest and longest a generation can be made
+    private long maxGenerations;             // stop after this many generations (0 means no limit)
+    private long maxMillis;                  // stop after this much wall clock time (0 means no limit)
+    private int logEvery;                    // how many generations between progress lines
+    private DecimalFormat df;
+    private AutosaveMS autosave;             // checkpoints every few generations and at the end, written in the background
+    private volatile boolean stopRequested;  // set on shutdown (e.g. ctrl-c), the current generation is finished first
+    private CountDownLatch stopped;
+
+    HeadlessMS(Config config, long seed, long maxGenerations, long maxMillis, int logEvery, int numIslands, int migrationInterval, int migrants, IslandModelMS.Topology topology) {
+        this.maxGenerations = maxGenerations;
+        this.maxMillis = maxMillis;
+        this.logEvery = Math.max(1, logEvery);
+        this.numIslands = numIslands;
+        convergence = new Convergence(config.plateauWindow, config.plateauMinGain, config.plateauMaxSpread);
+        onPlateau = config.onPlateau;
+        minTicks = config.minTicks();
+        maxTicks = config.maxTicks();
+        if (numIslands > 1) {
+            islands = new IslandModelMS(config, numIslands, migrationInterval, migrants, topology, new SplittableRandom(seed));
+        } else {
+            sim = new SimulationMS(config, new SplittableRandom(seed));
+        }
+        forEachRun((run, s) -> { // every generation of every population goes to a CSV file as it finishes
+            try {
+                s.getFitnessLog().openCsv(Paths.get(Params.FITNESS_LOG_DIR, "fitness-" + seed + (islands != null ? "-" + run : "") + ".csv"));
+            } catch (IOException e) {
+                System.err.println("Couldn't start the fitness log: " + e.getMessage());
+            }
+        });
+        df = new DecimalFormat("#0.00");
+        autosave = new AutosaveMS(Paths.get(Params.AUTOSAVE_DIR), Params.AUTOSAVE_KEEP);
+        stopped = new CountDownLatch(1);
+    }
+
+    void run() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> { // let run() save at a generation boundary before the JVM goes
+            stopRequested = true;
+            try {
+                stopped.await(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "save-on-exit"));
+        long start = System.nanoTime();
+        long lastLog = start;
+        long ticksRun = 0, ticksAtLastLog = 0;
+        long gensRun = 0, gensAtLastLog = 0;
+        long deadline = maxMillis > 0 ? start + maxMillis * 1_000_000L : Long.MAX_VALUE;
+        String stopReason;
+
+        try {
+            while (true) {
+                if (maxGenerations > 0 && gensRun >= maxGenerations) {
+                    stopReason = "ran the " + maxGenerations + " generations asked for";
+                    break;
+                }
+                if (stopRequested) {
+                    stopReason = "asked to stop";
+                    break;
+                }
+                int generationTicks = generationTicks();
+                if (islands != null) {
+                    islands.generation();
+                    ticksRun += (long) numIslands * generationTicks;
+                } else { // a whole generation at a time, so several worlds can each run theirs on their own thread
+                    sim.evaluateGeneration();
+                    sim.evolve();
+                    ticksRun += generationTicks;
+                }
+                gensRun++;
+                if (AutosaveMS.isDue(getGenerations())) {
+                    forEachRun((run, sim) -> autosave.autosave(run, CheckpointMS.capture(sim), sim.getGenerations()));
+                }
+                if (gensRun % logEvery == 0) {
+                    long now = System.nanoTime();
+                    double seconds = (now - lastLog) / 1e9;
+                    System.out.println("Generation " + getGenerations()
+                            + " avg fitness " + df.format(avgFitness())
+                            + " best fitness " + (int) bestFitness()
+                            + " | " + df.format((gensRun - gensAtLastLog) / seconds) + " gens/s"
+                            + ", " + (long) ((ticksRun - ticksAtLastLog) / seconds) + " ticks/s");
+                    lastLog = now;
+                    gensAtLastLog = gensRun;
+                    ticksAtLastLog = ticksRun;
+                }
+                String plateau = convergence.add(bestFitness(), avgFitness());
+                if (plateau != null) {
+                    int ticks = onPlateau == Convergence.Action.GROW ? Math.min(maxTicks, generationTicks * 2)
+                            : onPlateau == Convergence.Action.SHRINK ? Math.max(minTicks, generationTicks / 2) : generationTicks;
+                    if (ticks == generationTicks) {
+                        stopReason = "fitness plateaued, " + plateau;
+                        break;
+                    }
+                    forEachRun((run, sim) -> sim.setGenerationTicks(ticks));
+                    convergence.clear(); // fitness is counted over the whole generation, so the old numbers don't compare any more
+                    System.out.println("Generation " + getGenerations() + ": " + plateau + ", generations are " + ticks + " ticks long from now on");
+                }
+                if (System.nanoTime() >= deadline) {
+                    stopReason = "ran the " + maxMillis / 1000 + " seconds asked for";
+                    break;
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println("Finished " + gensRun + " generations (" + ticksRun + " ticks) in " + df.format(seconds) + " s: "
+                    + df.format(gensRun / seconds) + " gens/s, " + (long) (ticksRun / seconds) + " ticks/s");
+            System.out.println("Stopped: " + stopReason);
+            long[] agentTicks = new long[2];
+            forEachRun((run, sim) -> {
+                agentTicks[0] += sim.getAgentTicks();
+                agentTicks[1] += sim.getAgentTicksSkipped();
+            });
+            if (agentTicks[1] > 0) {
+                System.out.println("Racing retired sweepers for " + df.format(100.0 * agentTicks[1] / agentTicks[0]) + "% of their ticks.");
+            }
+            if (StatsMS.ENABLED) {
+                System.out.println(StatsMS.report());
+            }
+        } finally { // an exception out of the loop still saves, and still lets the shutdown hook go
+            try {
+                forEachRun((run, sim) -> {
+                    autosave.saveOnExit(run, CheckpointMS.capture(sim));
+                    sim.getFitnessLog().close();
+                });
+                autosave.flush(60_000);
+                if (islands != null) {
+                    islands.shutdown();
+                }
+            } finally {
+                stopped.countDown();
+            }
+        }
+    }
+
+    private void forEachRun(BiConsumer<String, SimulationMS> job) { // each population, named for its save files
+        if (islands == null) {
+            job.accept("headless", sim);
+            return;
+        }
+        for (int i = 0; i < islands.getIslands().size(); i++) {
+            job.accept("island" + i, islands.getIslands().get(i));
+        }
+    }
+
+    private int getGenerations() {
+        return islands != null ? islands.getGenerations() : sim.getGenerations();
+    }
+
+    private int generationTicks() { // every population's generations are the same length
+        return islands != null ? islands.getIslands().get(0).getGenerationTicks() : sim.getGenerationTicks();
+    }
+
+    private double avgFitness() {
+        return islands != null ? islands.avgFitness() : sim.getGA().avgFitness();
+    }
+
+    private double bestFitness() {
+        return islands != null ? islands.bestFitness() : sim.getGA().bestFitness();
+    }
+
+    private static void plotLog(Path csv) { // draws a fitness log of any length to a png next to it, reading it a line at a time
+        int width = 1200, height = 300;
+        try {
+            FitnessChartMS chart = new FitnessChartMS(width, width, height);
+            chart.setData(FitnessLogMS.readDownsampled(csv, width));
+            BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = img.createGraphics();
+            chart.draw(g, width, height);
+            g.dispose();
+            Path png = csv.resolveSibling(csv.getFileName() + ".png");
+            ImageIO.write(img, "png", png.toFile());
+            System.out.println("Wrote " + png);
+        } catch (IOException e) {
+            System.err.println("Couldn't plot " + csv + ": " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Config config = new Config();
+        long generations = 0, seconds = 0;
+        int logEvery = 10;
+        int numIslands = 1, migrationInterval = Params.MIGRATION_INTERVAL, migrants = Params.MIGRANTS;
+        IslandModelMS.Topology topology = Params.MIGRATION_TOPOLOGY;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generations":
+                    generations = Long.parseLong(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Long.parseLong(args[++i]);
+                    break;
+                case "--seed":
+                    config.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--log-every":
+                    logEvery = Integer.parseInt(args[++i]);
+                    break;
+                case "--islands": // 0 picks Params.ISLANDS
+                    numIslands = Integer.parseInt(args[++i]);
+                    if (numIslands == 0) {
+                        numIslands = Params.ISLANDS;
+                    }
+                    break;
+                case "--migrate-every":
+                    migrationInterval = Integer.parseInt(args[++i]);
+                    break;
+                case "--migrants":
+                    migrants = Integer.parseInt(args[++i]);
+                    break;
+                case "--topology":
+                    topology = IslandModelMS.Topology.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--plot-log": // chart a fitness log instead of training
+                    plotLog(Paths.get(args[++i]));
+                    return;
+                default: // --config and --set
+                    try {
+                        if (config.parse(args, i)) {
+                            i++;
+                            break;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        System.err.println(e.getMessage());
+                    }
+                    usage();
+            }
+        }
+        try {
+            config.validate();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+        new HeadlessMS(config, Params.seed(config.seed), generations, seconds * 1000, logEvery, numIslands, migrationInterval, migrants, topology).run();
+    }
+
+    private static void usage() {
+        System.err.println("Usage: HeadlessMS [--seed S] [--generations N] [--seconds S] [--log-every N]"
+                + " [--islands N [--migrate-every K] [--migrants M] [--topology ring|full]] " + Config.USAGE + " | --plot-log FILE");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,115 @@
+package neuralnet2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+class IslandModelMS {                        // several populations evolving side by side, each in its own world on its own thread, trading their best now and then
+
+    enum Topology {
+        RING,                                // each island sends its best to the next one along
+        FULL                                 // each island sends its best to every other island
+    }
+
+    private ArrayList<SimulationMS> islands;
+    private int migrationInterval;           // how many generations between migrations
+    private int migrants;                    // how many genomes each island sends out
+    private Topology topology;
+    private int generations;
+    private ExecutorService threads;
+
+    IslandModelMS(Config config, int numIslands, int migrationInterval, int migrants, Topology topology, SplittableRandom rnd) {
+        this.migrationInterval = Math.max(1, migrationInterval);
+        this.migrants = migrants;
+        this.topology = topology;
+        islands = new ArrayList<>(numIslands);
+        for (int i = 0; i < numIslands; i++) {
+            islands.add(new SimulationMS(config, rnd.split()));
+        }
+        threads = Executors.newFixedThreadPool(numIslands, r -> {
+            Thread t = new Thread(r, "island");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void generation() { // runs every island through one generation
+        forEachIsland(SimulationMS::evaluateGeneration);
+        generations++;
+        if (generations % migrationInterval == 0) {
+            migrate();
+        }
+        forEachIsland(SimulationMS::evolve);
+    }
+
+    private void migrate() { // collect everyone's emigrants first so nobody passes on a genome they just received
+        ArrayList<GenomeArena> emigrants = new ArrayList<>();
+        for (SimulationMS island : islands) {
+            emigrants.add(island.getGA().getNBest(migrants));
+        }
+        for (int to = 0; to < islands.size(); to++) {
+            ArrayList<GenomeArena> arrivals = new ArrayList<>();
+            for (int from = 0; from < islands.size(); from++) {
+                if (from != to && (topology == Topology.FULL || (from + 1) % islands.size() == to)) {
+                    arrivals.add(emigrants.get(from));
+                }
+            }
+            SimulationMS island = islands.get(to);
+            island.getGA().replaceWorst(arrivals);
+        }
+    }
+
+    private void forEachIsland(Consumer<SimulationMS> job) {
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (SimulationMS island : islands) {
+            jobs.add(() -> {
+                job.accept(island);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : threads.invokeAll(jobs)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // self-explanatory
+    int getGenerations() {
+        return generations;
+    }
+
+    ArrayList<SimulationMS> getIslands() {
+        return islands;
+    }
+
+    double avgFitness() { // over all the islands
+        double total = 0;
+        for (SimulationMS island : islands) {
+            total += island.getGA().avgFitness();
+        }
+        return total / islands.size();
+    }
+
+    double bestFitness() {
+        double best = -Double.MAX_VALUE;
+        for (SimulationMS island : islands) {
+            best = Math.max(best, island.getGA().bestFitness());
+        }
+        return best;
+    }
+
+    void shutdown() {
+        threads.shutdown();
+    }
+}
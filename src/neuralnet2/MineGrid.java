@@ -0,0 +1,194 @@
+package neuralnet2;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class MineGrid {                             // a uniform grid over a list of mines so the closest one can be found without looking at all of them
+
+    private double[] x, y;                   // where each mine is, the grid keeps them as well as indexing them
+    private int cols, rows;                  // how many cells across and down
+    private double width, height;            // the size of the world the mines are in
+    private double cellW, cellH;             // how big each cell is
+    private int[] head;                      // the first mine in each cell (-1 if empty)
+    private int[] next, prev;                // a doubly linked list of mines per cell, so moving a mine is O(1)
+    private int[] cellOf;                    // which cell each mine is in
+
+    MineGrid(ArrayList<Point2D> mines, double width, double height) {
+        this(xs(mines), ys(mines), width, height);
+    }
+
+    MineGrid(double[] x, double[] y, double width, double height) { // takes the arrays over, set moves mines about in them
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        // aim for about one mine per cell, keeping the cells roughly square
+        int n = Math.max(1, x.length);
+        cols = Math.max(1, (int) Math.round(Math.sqrt(n * width / height)));
+        rows = Math.max(1, (int) Math.ceil((double) n / cols));
+        cellW = width / cols;
+        cellH = height / rows;
+        head = new int[cols * rows];
+        next = new int[x.length];
+        prev = new int[x.length];
+        cellOf = new int[x.length];
+        Arrays.fill(head, -1);
+        for (int i = 0; i < x.length; i++) {
+            link(i, cellFor(x[i], y[i]));
+        }
+    }
+
+    private static double[] xs(ArrayList<Point2D> mines) {
+        return mines.stream().mapToDouble(Point2D::getX).toArray();
+    }
+
+    private static double[] ys(ArrayList<Point2D> mines) {
+        return mines.stream().mapToDouble(Point2D::getY).toArray();
+    }
+
+    // the squared distance between a sweeper and a mine, measured around the edges of the world if sensing wraps
+    static double distanceSq(double px, double py, double mx, double my, double width, double height) {
+        double dx = delta(mx - px, width);
+        double dy = delta(my - py, height);
+        return dx * dx + dy * dy;
+    }
+
+    static double delta(double d, double size) { // the shortest way across one axis, going around the edge if that's closer
+        if (Params.TORUS_SENSING) {
+            if (d > size / 2) {
+                d -= size;
+            } else if (d < -size / 2) {
+                d += size;
+            }
+        }
+        return d;
+    }
+
+    double getX(int i) {
+        return x[i];
+    }
+
+    double getY(int i) {
+        return y[i];
+    }
+
+    int size() {
+        return x.length;
+    }
+
+    double[] copy(double[] into) { // the mines as x/y pairs, into the array given if it's big enough
+        if (into.length < 2 * x.length) {
+            into = new double[2 * x.length];
+        }
+        for (int i = 0; i < x.length; i++) {
+            into[2 * i] = x[i];
+            into[2 * i + 1] = y[i];
+        }
+        return into;
+    }
+
+    void set(int i, double mineX, double mineY) { // moves a mine, e.g. when it's been swept up and respawns somewhere else
+        x[i] = mineX;
+        y[i] = mineY;
+        int cell = cellFor(mineX, mineY);
+        if (cell != cellOf[i]) {
+            unlink(i);
+            link(i, cell);
+        }
+    }
+
+    // the same answer as AgentMS.getClosestMine (ties go to the lowest index), searching outward ring by ring from the sweeper's cell
+    int nearest(double px, double py) {
+        int cx = col(px), cy = row(py);
+        int closestMine = -1;
+        double closestSoFar = Double.MAX_VALUE;
+        int maxRing = Params.TORUS_SENSING ? Math.max(cols, rows) / 2 + 1 : Math.max(cols, rows);
+        for (int r = 0; r <= maxRing; r++) {
+            if (r > 0 && closestMine >= 0) { // can anything in this ring still be as close as what we've found?
+                double bound = ringBound(px, py, cx, cy, r);
+                if (bound * bound > closestSoFar) {
+                    break;
+                }
+            }
+            for (int dy = -r; dy <= r; dy++) {
+                int step = (dy == -r || dy == r) ? 1 : 2 * r; // only the outline of the ring, its inside was already searched
+                for (int dx = -r; dx <= r; dx += step) {
+                    int cell = cell(cx + dx, cy + dy);
+                    if (cell < 0) {
+                        continue;
+                    }
+                    for (int i = head[cell]; i >= 0; i = next[i]) {
+                        double lengthOne = distanceSq(px, py, x[i], y[i], width, height);
+                        if (lengthOne < closestSoFar || (lengthOne == closestSoFar && i < closestMine)) {
+                            closestSoFar = lengthOne;
+                            closestMine = i;
+                        }
+                    }
+                }
+            }
+        }
+        return Math.max(closestMine, 0);
+    }
+
+    // how far the sweeper is from the nearest cell of ring r, anything in the ring is at least this far away
+    private double ringBound(double x, double y, int cx, int cy, int r) {
+        double bound = Double.MAX_VALUE;
+        if (Params.TORUS_SENSING || cx - r >= 0) {
+            bound = Math.min(bound, x - (cx - r + 1) * cellW);
+        }
+        if (Params.TORUS_SENSING || cx + r < cols) {
+            bound = Math.min(bound, (cx + r) * cellW - x);
+        }
+        if (Params.TORUS_SENSING || cy - r >= 0) {
+            bound = Math.min(bound, y - (cy - r + 1) * cellH);
+        }
+        if (Params.TORUS_SENSING || cy + r < rows) {
+            bound = Math.min(bound, (cy + r) * cellH - y);
+        }
+        return bound - 1e-6; // a little slack for rounding at the cell edges
+    }
+
+    private int col(double x) {
+        return Math.min(cols - 1, Math.max(0, (int) (x / cellW)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) (y / cellH)));
+    }
+
+    private int cellFor(double x, double y) {
+        return row(y) * cols + col(x);
+    }
+
+    private int cell(int c, int r) { // the cell at a column and row, wrapping around the edges, or -1 if it's off the map
+        if (Params.TORUS_SENSING) {
+            c = Math.floorMod(c, cols);
+            r = Math.floorMod(r, rows);
+        } else if (c < 0 || c >= cols || r < 0 || r >= rows) {
+            return -1;
+        }
+        return r * cols + c;
+    }
+
+    private void link(int i, int cell) {
+        cellOf[i] = cell;
+        prev[i] = -1;
+        next[i] = head[cell];
+        if (head[cell] >= 0) {
+            prev[head[cell]] = i;
+        }
+        head[cell] = i;
+    }
+
+    private void unlink(int i) {
+        if (prev[i] >= 0) {
+            next[prev[i]] = next[i];
+        } else {
+            head[cellOf[i]] = next[i];
+        }
+        if (next[i] >= 0) {
+            prev[next[i]] = prev[i];
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package neuralnet2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+// turns a network's topology into Java source with every loop unrolled and every index a constant, compiles it in memory
+// and loads it as a hidden class, so the JIT gets one small straight-line method per topology instead of NeuralNetwork.Update's
+// nested loops over layer tables; the arithmetic is the same as Update's, in the same order, so the outputs are bit for bit the same
+class NetworkCompiler {
+
+    interface Evaluator {                    // what the generated classes implement
+        // reads the weights from weights[base] onwards, returns how many outputs it wrote (like NeuralNetwork.Update)
+        int update(double[] weights, int base, double[] inputs, double[] outputs);
+    }
+
+    interface BatchEvaluator {               // the same for a whole population laid out like PopulationNet's (row r of agent a at r * stride + a)
+        // runs the agents in [from, to) one after another, the whole network for each, returns how many outputs each got
+        int update(double[] weights, double[] inputs, double[] outputs, int stride, int from, int to);
+    }
+
+    static final int MAX_WEIGHTS = 500;      // bigger networks stay interpreted, the method would grow past what the JIT will compile (HugeMethodLimit)
+
+    private static final HashMap<String, Object> compiled = new HashMap<>(); // by topology (and kind), null for the ones that couldn't be done
+    private static int classes;              // to give each generated class its own name
+
+    // the evaluator for this network's topology and activations, or null if it's one the interpreter has to run
+    static synchronized Evaluator compile(NeuralNetwork shape) {
+        return (Evaluator) compile(shape, false);
+    }
+
+    // the same for PopulationNet, or null if it has to run the layers itself
+    static synchronized BatchEvaluator compileBatch(NeuralNetwork shape) {
+        return (BatchEvaluator) compile(shape, true);
+    }
+
+    private static Object compile(NeuralNetwork shape, boolean batch) {
+        String key = (batch ? "batch " : "") + describe(shape);
+        if (!compiled.containsKey(key)) {
+            compiled.put(key, build(shape, batch));
+        }
+        return compiled.get(key);
+    }
+
+    private static String describe(NeuralNetwork shape) {
+        StringBuilder key = new StringBuilder().append(shape.getNumInputs()).append(' ').append(shape.getResponse());
+        for (int i = 0; i < shape.getNumEvaluatedLayers(); i++) {
+            key.append(' ').append(shape.getLayerNeurons(i)).append('x').append(shape.getLayerInputs(i)).append(shape.getActivation(i));
+        }
+        return key.toString();
+    }
+
+    private static Object build(NeuralNetwork shape, boolean batch) {
+        if (shape.getNumEvaluatedLayers() == 0 || shape.getNumberOfWeights() > MAX_WEIGHTS) {
+            return null;
+        }
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            System.err.println("The compiled network evaluator needs a JDK rather than a JRE, using the interpreter.");
+            return null;
+        }
+        String name = (batch ? "CompiledBatch" : "CompiledNet") + classes++;
+        try {
+            byte[] bytes = javac(javac, name, batch ? batchSource(shape, name) : source(shape, name));
+            if (bytes == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            Object evaluator = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            if (batch ? !matchesInterpreter((BatchEvaluator) evaluator, shape) : !matchesInterpreter((Evaluator) evaluator, shape)) {
+                System.err.println("The compiled network evaluator doesn't agree with the interpreter, using the interpreter.");
+                return null;
+            }
+            return evaluator;
+        } catch (Throwable e) {
+            System.err.println("Couldn't compile the network evaluator (" + e + "), using the interpreter.");
+            return null;
+        }
+    }
+
+    // the same steps as NeuralNetwork.Update with the numbers filled in: the inputs and every neuron's output are locals,
+    // each neuron's sum starts at 0 and has its weighted inputs added one at a time, then the threshold and the bias
+    static String source(NeuralNetwork shape, String name) {
+        StringBuilder src = new StringBuilder();
+        src.append("package neuralnet2;\n\n");
+        src.append("final class ").append(name).append(" implements NetworkCompiler.Evaluator {\n");
+        src.append("    public int update(double[] w, int b, double[] in, double[] out) {\n");
+        body(src, shape, "        ", w -> "w[b + " + w + "]", k -> "in[" + k + "]", n -> "out[" + n + "]");
+        src.append("        return ").append(shape.getLayerNeurons(shape.getNumEvaluatedLayers() - 1)).append(";\n");
+        src.append("    }\n}\n");
+        return src.toString();
+    }
+
+    // the same body in a loop over the agents, reading and writing PopulationNet's columns; PopulationNet streams each neuron
+    // across every agent through its netInput row, this keeps one agent's whole network in registers instead
+    static String batchSource(NeuralNetwork shape, String name) {
+        StringBuilder src = new StringBuilder();
+        src.append("package neuralnet2;\n\n");
+        src.append("final class ").append(name).append(" implements NetworkCompiler.BatchEvaluator {\n");
+        src.append("    public int update(double[] w, double[] in, double[] out, int stride, int from, int to) {\n");
+        src.append("        for (int a = from; a < to; a++) {\n");
+        body(src, shape, "            ", w -> "w[" + w + " * stride + a]", k -> "in[" + k + " * stride + a]", n -> "out[" + n + " * stride + a]");
+        src.append("        }\n");
+        src.append("        return ").append(shape.getLayerNeurons(shape.getNumEvaluatedLayers() - 1)).append(";\n");
+        src.append("    }\n}\n");
+        return src.toString();
+    }
+
+    private static void body(StringBuilder src, NeuralNetwork shape, String indent, IntFunction<String> weight, IntFunction<String> input, IntFunction<String> output) {
+        src.append(indent).append("double s;\n");
+        String[] inputs = new String[shape.getNumInputs()];
+        for (int k = 0; k < inputs.length; k++) {
+            inputs[k] = "i" + k;
+            src.append(indent).append("double i").append(k).append(" = ").append(input.apply(k)).append(";\n");
+        }
+        int layers = shape.getNumEvaluatedLayers();
+        String response = Double.toString(shape.getResponse());
+        String bias = "(" + Params.BIAS + ")";
+        for (int i = 0; i < layers; i++) {
+            String activation = "Activation." + shape.getActivation(i).name();
+            String[] outputs = new String[shape.getLayerNeurons(i)];
+            int w = shape.getLayerOffset(i);
+            for (int n = 0; n < outputs.length; n++) {
+                src.append(indent).append("s = 0;\n");
+                for (String in : inputs) {
+                    src.append(indent).append("s += ").append(weight.apply(w++)).append(" * ").append(in).append(";\n");
+                }
+                src.append(indent).append("s += ").append(weight.apply(w++)).append(" + ").append(bias).append(";\n");
+                String value = activation + ".apply(s, " + response + ")";
+                if (i == layers - 1) {
+                    src.append(indent).append(output.apply(n)).append(" = ").append(value).append(";\n");
+                } else {
+                    outputs[n] = "l" + i + "_" + n;
+                    src.append(indent).append("double ").append(outputs[n]).append(" = ").append(value).append(";\n");
+                }
+            }
+            inputs = outputs;
+        }
+    }
+
+    private static byte[] javac(JavaCompiler javac, String name, String source) { // compiles one class from a string to bytes without touching the disk
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JavaFileObject in = new SimpleJavaFileObject(URI.create("string:///neuralnet2/" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        StandardJavaFileManager files = javac.getStandardFileManager(null, null, null);
+        JavaFileManager memory = new ForwardingJavaFileManager<>(files) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytes;
+                    }
+                };
+            }
+        };
+        List<String> options = new ArrayList<>(Arrays.asList("-classpath", classpath(), "-proc:none", "-g:none"));
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        boolean ok = javac.getTask(new PrintWriter(errors, true), memory, null, options, null, List.of(in)).call();
+        if (!ok) {
+            System.err.println("Couldn't compile the network evaluator, using the interpreter:\n" + errors);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String classpath() { // wherever this class was loaded from, as well as the JVM's own class path
+        String cp = System.getProperty("java.class.path");
+        try {
+            cp = new File(NetworkCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI()) + File.pathSeparator + cp;
+        } catch (Exception e) {
+            // the class path on its own will have to do
+        }
+        return cp;
+    }
+
+    private static boolean matchesInterpreter(Evaluator evaluator, NeuralNetwork shape) { // random weights and inputs through both, bit for bit
+        SplittableRandom rnd = new SplittableRandom(1);
+        NeuralNetwork reference = shape.sameShape();
+        double[] weights = new double[shape.getNumberOfWeights() + 3];
+        double[] in = new double[shape.getNumInputs()];
+        double[] expected = new double[shape.getMaxLayerSize()], actual = new double[shape.getMaxLayerSize()], scratch = new double[shape.getMaxLayerSize()];
+        for (int trial = 0; trial < 20; trial++) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = rnd.nextDouble() * 4 - 2;
+            }
+            for (int k = 0; k < in.length; k++) {
+                in[k] = rnd.nextDouble() * 4 - 2;
+            }
+            reference.useWeights(weights, 3); // not at the start, so base is checked too
+            int n = reference.Update(in, expected, scratch);
+            if (evaluator.update(weights, 3, in, actual) != n) {
+                return false;
+            }
+            for (int o = 0; o < n; o++) {
+                if (Double.doubleToLongBits(expected[o]) != Double.doubleToLongBits(actual[o])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesInterpreter(BatchEvaluator evaluator, NeuralNetwork shape) { // a population of random networks, each checked against Update
+        SplittableRandom rnd = new SplittableRandom(1);
+        NeuralNetwork reference = shape.sameShape();
+        int stride = 67, from = 3, numWeights = shape.getNumberOfWeights(), numIn = shape.getNumInputs(); // odd, and not from 0, so from and stride are checked too
+        double[] weights = new double[numWeights * stride], inputs = new double[numIn * stride], outputs = new double[shape.getMaxLayerSize() * stride];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = rnd.nextDouble() * 4 - 2;
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = rnd.nextDouble() * 4 - 2;
+        }
+        int n = evaluator.update(weights, inputs, outputs, stride, from, stride);
+        double[] w = new double[numWeights], in = new double[numIn];
+        double[] expected = new double[shape.getMaxLayerSize()], scratch = new double[shape.getMaxLayerSize()];
+        for (int a = from; a < stride; a++) {
+            for (int i = 0; i < numWeights; i++) {
+                w[i] = weights[i * stride + a];
+            }
+            for (int k = 0; k < numIn; k++) {
+                in[k] = inputs[k * stride + a];
+            }
+            reference.useWeights(w, 0);
+            if (reference.Update(in, expected, scratch) != n) {
+                return false;
+            }
+            for (int o = 0; o < n; o++) {
+                if (Double.doubleToLongBits(expected[o]) != Double.doubleToLongBits(outputs[o * stride + a])) {
+                    return false;
+                }
+            }
+        }
+        return outputs[0] == 0 && outputs[from - 1] == 0; // and nothing outside the range was touched
+    }
+}
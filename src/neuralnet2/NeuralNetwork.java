@@ -1,124 +1,189 @@
 package neuralnet2;
 
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
-class NeuralNetwork implements Serializable {                               // as general a description of a neural network as possible so that it can be used in any NN scenario
-
-    // a subclass defining a neuron
-    static class Neuron implements Serializable {
-        private int numInputs;                             // each neuron takes in inputs
-        ArrayList<Double> weights;                         // whose significance is modified by a weight
-
-        Neuron(int inputs) {
-            numInputs = inputs + 1;                        // one extra for the threshold value
-            weights = new ArrayList<>(numInputs);
-            Random rnd = new Random();
-            for (int i = 0; i < numInputs; i++) {          // randomized weight initialization from -1 to 1
-                weights.add(rnd.nextDouble() * 2.0 - 1);
-            }
-        }
-    }
-
-    // a subclass defining a layer of neurons in a network
-    static class NeuronLayer implements Serializable {
-        private int numNeurons;                             // a layer consists of at least one neuron
-        ArrayList<Neuron> neurons;                          // the neurons of the layer
-
-        NeuronLayer(int neuronCount, int inputsPerNeuron) {
-            numNeurons = neuronCount;
-            neurons = new ArrayList<>(numNeurons);
-            for (int i = 0; i < neuronCount; i++) {         // randomized neuron initialization
-                neurons.add(new Neuron(inputsPerNeuron));
-            }
-        }
-    }
+class NeuralNetwork {                               // as general a description of a neural network as possible so that it can be used in any NN scenario
 
     private int numInputs;                      // a neural net takes in a set of inputs
     private int numOutputs;                     // and delivers a set of outputs
     private int numHiddenLayers;                // between these inputs and outputs are 'hidden' layers of neurons
     private int numNeuronsPerHiddenLayer;       // which may have many neurons to create the many synaptic connections
-    private ArrayList<NeuronLayer> layers;
+    private int numLayers;                      // hidden layers plus the output layer
+    private int[] layerNeurons;                 // how many neurons each layer has
+    private int[] layerInputs;                  // how many inputs each neuron of a layer takes (not counting the threshold)
+    private int[] layerOffsets;                 // where each layer's weights start in the weights array
+    private double[] weights;                   // every weight of every neuron, layer by layer, neuron by neuron, threshold last
+    private int base;                           // where this network's weights start in that array (it can be a whole population's)
+    private int numWeights;                     // how many of them are this network's
+    private int maxLayerSize;                   // the most neurons in any layer, the size the scratch buffers need to be
+    private Activation[] activations;           // what each layer's neurons do with their summed input
+    private double response;                    // how stretched out the sigmoid and tanh curves are
+    private NetworkCompiler.Evaluator compiled; // Update's loops unrolled for this topology (null to interpret them)
 
     // initialization/creation of a network given the parameters defining the size of the network
-    NeuralNetwork(int numIn, int numOut, int numHidden, int numNeuronPerHidden) {
+    NeuralNetwork(int numIn, int numOut, int numHidden, int numNeuronPerHidden, SplittableRandom rnd) {
         numInputs = numIn;
         numOutputs = numOut;
         numHiddenLayers = numHidden;
         numNeuronsPerHiddenLayer = numNeuronPerHidden;
-        layers = new ArrayList<>();
-        createNet();
+        createNet(rnd);
+    }
+
+    NeuralNetwork(int numIn, int numOut, int numHidden, int numNeuronPerHidden) { // just the shape, all the weights start at zero
+        this(numIn, numOut, numHidden, numNeuronPerHidden, null);
     }
 
-    private void createNet() {
+    private void createNet(SplittableRandom rnd) {
+        numLayers = numHiddenLayers + 1;
+        layerNeurons = new int[numLayers];
+        layerInputs = new int[numLayers];
+        layerOffsets = new int[numLayers];
         if (numHiddenLayers > 0) {
             // new layer connecting the inputs to the first hidden network if one exists
-            layers.add(new NeuronLayer(numNeuronsPerHiddenLayer, numInputs));
-            for (int i = 0; i < numHiddenLayers - 1; i++) {
+            layerNeurons[0] = numNeuronsPerHiddenLayer;
+            layerInputs[0] = numInputs;
+            for (int i = 1; i < numHiddenLayers; i++) {
                 // for the hidden middle layers, one hidden layer to the next
-                layers.add(new NeuronLayer(numNeuronsPerHiddenLayer, numNeuronsPerHiddenLayer));
+                layerNeurons[i] = numNeuronsPerHiddenLayer;
+                layerInputs[i] = numNeuronsPerHiddenLayer;
             }
         }
         // one last layer to connect the last hidden layer to the outputs
         // if there's no hidden layers, just one layer with inputs and outputs
-        layers.add(new NeuronLayer(numOutputs, numInputs));
+        layerNeurons[numLayers - 1] = numOutputs;
+        layerInputs[numLayers - 1] = numInputs;
+
+        numWeights = 0;
+        maxLayerSize = 0;
+        for (int i = 0; i < numLayers; i++) {
+            layerOffsets[i] = numWeights;
+            numWeights += layerNeurons[i] * (layerInputs[i] + 1); // one extra for the threshold value
+            maxLayerSize = Math.max(maxLayerSize, layerNeurons[i]);
+        }
+        activations = new Activation[numLayers];
+        Arrays.fill(activations, Activation.SIGMOID);
+        response = Params.ACT_RESPONSE;
+
+        weights = new double[numWeights];
+        for (int i = 0; rnd != null && i < numWeights; i++) { // randomized weight initialization from -1 to 1
+            weights[i] = rnd.nextDouble() * 2.0 - 1;
+        }
     }
 
     int getNumberOfWeights() { // returns total number of weights in the whole network
-        int numWeights = 0;
-        for (NeuronLayer l : layers) {
-            for (int j = 0; j < l.numNeurons; j++) {
-                numWeights += l.neurons.get(j).weights.size();
-            }
-        }
         return numWeights;
     }
 
-    void replaceWeights(ArrayList<Double> newWeights) { // ...replaces weights given an input ArrayList
-        if (newWeights.size() != getNumberOfWeights()) {
-            System.err.println("!! newWeights size does not equal total number of weights !!");
-        }
-        int cWeight = 0; // index to walk through newWeights
-        for (NeuronLayer l : layers) {
-            for (Neuron n : l.neurons) {
-                for (int k = 0; k < n.numInputs; k++) {
-                    n.weights.set(k, newWeights.get(cWeight));
-                    cWeight++;
-                }
-            }
+    int getMaxLayerSize() {
+        return maxLayerSize;
+    }
+
+    // the shape of the network, so that other evaluators can walk the weights the same way Update does
+    int getNumInputs() {
+        return numInputs;
+    }
+
+    int getNumEvaluatedLayers() { // Update runs through the hidden layers only
+        return numHiddenLayers;
+    }
+
+    int getLayerNeurons(int layer) {
+        return layerNeurons[layer];
+    }
+
+    int getLayerInputs(int layer) {
+        return layerInputs[layer];
+    }
+
+    int getLayerOffset(int layer) {
+        return layerOffsets[layer];
+    }
+
+    Activation getActivation(int layer) {
+        return activations[layer];
+    }
+
+    double getResponse() {
+        return response;
+    }
+
+    void setActivations(Activation[] perLayer, double response) { // one for each evaluated layer, any layers after those keep theirs
+        System.arraycopy(perLayer, 0, activations, 0, Math.min(perLayer.length, numLayers));
+        this.response = response;
+    }
+
+    NeuralNetwork sameShape() { // another network like this one, with its weights all zero and interpreted
+        NeuralNetwork net = new NeuralNetwork(numInputs, numOutputs, numHiddenLayers, numNeuronsPerHiddenLayer);
+        net.setActivations(activations, response);
+        return net;
+    }
+
+    boolean compile() { // runs Update through code generated for this topology from now on, if NetworkCompiler can make it
+        compiled = NetworkCompiler.compile(this);
+        return compiled != null;
+    }
+
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    void useWeights(double[] block, int offset) { // run on the weights at block[offset] onwards from now on, read in place rather than copied
+        if (block.length - offset < getNumberOfWeights()) {
+            System.err.println("!! block is too short for the number of weights !!");
+            return;
         }
+        weights = block;
+        base = offset;
     }
 
-    @SuppressWarnings("unchecked")
     ArrayList<Double> Update(ArrayList<Double> inputs) { // takes the inputs and computes the outputs having run through the neural net layer
         ArrayList<Double> outputs = new ArrayList<>(numOutputs);
-        double netInput;
-
         if (inputs.size() != numInputs) {
             System.err.println("!! input size does not equal number of inputs !!");
             return outputs;        // empty outputs if incorrect number of inputs
         }
+        double[] in = new double[numInputs];
+        for (int i = 0; i < numInputs; i++) {
+            in[i] = inputs.get(i);
+        }
+        double[] out = new double[maxLayerSize];
+        int numOut = Update(in, out, new double[maxLayerSize]);
+        for (int i = 0; i < numOut; i++) {
+            outputs.add(out[i]);
+        }
+        return outputs;
+    }
 
-        for (int i = 0; i < numHiddenLayers; i++) { // for each layer
-            if (i > 0) {
-                inputs = (ArrayList<Double>) outputs.clone(); // make the new inputs be the outputs from the previous iteration of the loop
-            }
-            outputs.clear();
+    // the allocation free version: the caller hands over two buffers of at least getMaxLayerSize() length,
+    // the layers ping-pong between them so that the last one lands in outputs, returns how many outputs were written
+    int Update(double[] inputs, double[] outputs, double[] scratch) {
+        if (inputs.length != numInputs) {
+            System.err.println("!! input size does not equal number of inputs !!");
+            return 0;
+        }
+        if (compiled != null) {
+            return compiled.update(weights, base, inputs, outputs);
+        }
+        double[] in = inputs;
+        int numIn = numInputs;
+        double netInput;
 
-            for (Neuron n : layers.get(i).neurons) { // for each neuron in each layer
+        for (int i = 0; i < numHiddenLayers; i++) { // for each layer
+            double[] out = (numHiddenLayers - 1 - i) % 2 == 0 ? outputs : scratch;
+            int w = base + layerOffsets[i];
+            for (int n = 0; n < layerNeurons[i]; n++) { // for each neuron in each layer
                 netInput = 0;
-                for (int k = 0; k < inputs.size(); k++) {
-                    netInput += n.weights.get(k) * inputs.get(k);
+                for (int k = 0; k < numIn; k++) {
+                    netInput += weights[w++] * in[k];
                 }
-                netInput += n.weights.get(n.weights.size() - 1) + Params.BIAS;
-                outputs.add(sigmoid(netInput)); // scale the activation using a sigmoid function
+                netInput += weights[w++] + Params.BIAS;
+                out[n] = activations[i].apply(netInput, response); // scale the activation using the layer's function
             }
+            in = out; // make the new inputs be the outputs from the previous iteration of the loop
+            numIn = layerNeurons[i];
         }
-        return outputs;
-    }
-
-    private double sigmoid(double activation) { // the sigmoid function returns a value between 0 and 1, <0.5 for negative inputs, >0.5 for positive inputs
-        return 1.0 / (1.0 + Math.exp(-activation / Params.ACT_RESPONSE));
+        return numHiddenLayers > 0 ? numIn : 0;
     }
-}
\ No newline at end of file
+}
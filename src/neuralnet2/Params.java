@@ -1,12 +1,23 @@
 package neuralnet2;
 
-class Params {
+class Params {                                  // compile time settings, the ones Config has are only its defaults and can be changed per run
     // general parameters
+    static final long SEED = 0;                 // the master seed every random number comes from, 0 picks a new one each run
     static final int WIN_SIZE = 690;            // width of world map (DEPRECATED)
-    static final int WIN_WIDTH = 1035;          // width of world map
+    static final int WIN_WIDTH = 1035;          // width of world map (the window's, the world's own size is Config.worldWidth)
     static final int WIN_HEIGHT = 690;          // height of world map
-    static final int WIN_BTNSPACE = 85;
+    static final int CHART_HEIGHT = 120;        // the fitness chart under the game
+    static final int WIN_BTNSPACE = 85 + CHART_HEIGHT;
     static final int WIN_HRZSPACE = 8;
+    static final int AUTOSAVE_EVERY = 10;       // how many generations between background checkpoints (0 turns them off)
+    static final int AUTOSAVE_KEEP = 5;         // how many of them to keep, older ones are deleted
+    static final String AUTOSAVE_DIR = "tmp/game-state/autosave";
+    static final int FPS = 60;                  // how often the window redraws, the simulation runs separately
+    static final int TICKS_PER_SECOND = 60;     // the 1x simulation speed
+    static final SimLoopMS.Speed START_SPEED = SimLoopMS.Speed.X10;
+    static final int LABEL_INTERVAL_MS = 250;   // how often the ticks left label is updated
+    static final int FITNESS_HISTORY = 1000;    // how many generations of fitness are kept in memory (and charted)
+    static final String FITNESS_LOG_DIR = "tmp/logs"; // where every generation's fitness is logged, one CSV file per run
 
     // for the neural network
     static final int INPUTS = 6;                // number of inputs
@@ -14,7 +25,11 @@ class Params {
     static final int NEURONS_PER_HIDDEN = 5;    // number of neurons in each hidden layer
     static final int OUTPUTS = 2;               // number of outputs
     static final double BIAS = -1;              // the threshold (bias) value
-    static final double ACT_RESPONSE = 1;       // adjusts the sigmoid function
+    static final double ACT_RESPONSE = 1;       // adjusts the sigmoid (and tanh) function
+    static final String ACTIVATIONS = "sigmoid"; // each layer's activation function, comma separated, the last one repeats (see Activation)
+    static final boolean BATCHED_INFERENCE = true; // run all the agents' networks together each tick (false = one agent at a time)
+    static final boolean COMPILED_INFERENCE = false; // run the forward passes (batched or one agent at a time) through code generated for the topology (see NetworkCompiler)
+    static final boolean VECTOR_INFERENCE = false; // run the batch with SIMD (needs --add-modules jdk.incubator.vector), close to but not bit for bit the same
 
     // for the genetic algorithm
     static final double CROSSOVER_RATE = 0.3;    // the chance of crossover happening
@@ -22,6 +37,15 @@ class Params {
     static final double MAX_PERTURBATION = 0.3;  // maximum magnitude of the new value from mutation
     static final int NUM_ELITE = 4;              // how many of the top performers advance to the next generation
     static final int NUM_COPIES_ELITE = 1;       // and how many copies of those performers we'll use
+    static final Selection.Type SELECTION = Selection.Type.ROULETTE; // how parents are picked
+    static final int TOURNAMENT_SIZE = 3;        // how many genomes compete in each tournament (for Selection.Type.TOURNAMENT)
+    static final boolean PARALLEL_EPOCH = false; // breed across THREADS threads, each pair has its own random stream so the children come out the same either way
+
+    // for the island model (several populations trained side by side, see IslandModelMS)
+    static final int ISLANDS = 4;                // how many populations
+    static final int MIGRATION_INTERVAL = 10;    // how many generations between migrations
+    static final int MIGRANTS = 2;               // how many of its best genomes each island sends out
+    static final IslandModelMS.Topology MIGRATION_TOPOLOGY = IslandModelMS.Topology.RING;
 
     // these are specific to the mine sweeping scenario
     // for the controller to run the whole simulation
@@ -30,12 +54,34 @@ class Params {
     static final int GOODMINES = MINES-BADMINES;
     static final int SWEEPERS = 45;
     static final int TICKS = 1600;               // how long agents have a chance to gain fitness
+    static final boolean PARALLEL_TICK = false;  // move all the agents at once across THREADS threads, then hand out the mines they reached in agent order
+    static final int THREADS = Runtime.getRuntime().availableProcessors();
+    static final int WORLDS = 1;                 // how many worlds each genome is scored in at once (different mines and starting spots in each)
+    static final SimulationMS.FitnessStat FITNESS_STAT = SimulationMS.FitnessStat.MEAN; // how those scores are combined into one fitness
+    static final String RACE_AT = "";            // the fractions of a generation to race at, e.g. "0.25,0.5" (empty runs everyone to the end, see SimulationMS.race)
+    static final double RACE_KEEP = 0.5;         // how much of the field carries on after each race
+    static final int PLATEAU_WINDOW = 0;         // how many generations without progress make a plateau (0 trains until told to stop, see Convergence)
+    static final double PLATEAU_MIN_GAIN = 0;    // progress is the best fitness beating the best from before then by more than this
+    static final double PLATEAU_MAX_SPREAD = 0;  // or the average fitness moving about by at least this much (standard deviation, 0 ignores it)
+    static final Convergence.Action ON_PLATEAU = Convergence.Action.STOP;
+    static final int MIN_TICKS = 0;              // how short (Convergence.Action.SHRINK) or long (GROW) generations can get before a plateau stops the run,
+    static final int MAX_TICKS = 0;              // 0 for a quarter of and four times the starting length
     static final double MINE_SIZE = 4;
+    static final boolean TORUS_SENSING = false;  // measure distances to mines around the edges of the world, like the sweepers move
 
     // for the mine sweepers
     static final double MAX_TURN_RATE = 0.2;     // how quickly they may turn
     static final double MAX_SPEED = 1.5; // 2    // how fast they can go
     static final int SCALE = 15;                 // the size of the sweepers
+    static final int SPRITE_ROTATIONS = 64;      // how many angles a sweeper is drawn at
+
+    static long seed(long seed) { // the seed for this run (a new one if it's 0), printed so that an interesting run can be repeated exactly
+        if (seed == 0) {
+            seed = System.nanoTime() ^ 0x5DEECE66DL;
+        }
+        System.out.println("Seed: " + seed);
+        return seed;
+    }
 
     // for the Key Bindings
     static final String SWITCH_VISUALIZATION = "switch visualization";
@@ -0,0 +1,200 @@
+package neuralnet2;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+class PopulationNet {                        // runs every agent's network at once, layer by layer, since they all share one topology
+
+    private int popSize;                     // how many networks are being run side by side
+    private int numInputs;
+    private int numLayers;                   // how many layers get evaluated (same as NeuralNetwork.Update)
+    private int[] layerNeurons;
+    private int[] layerInputs;
+    private int[] layerOffsets;
+    private Activation[] layerActivations;
+    double response;                         // for the sigmoid and tanh activations
+    private int numWeights;                  // weights per network
+    private double[] weights;                // structure of arrays: weight w of agent a lives at w * popSize + a
+    private double[] inputs;                 // input k of agent a lives at k * popSize + a, same for the buffers below
+    private double[] outputs;
+    private double[] scratch;
+    double[] netInput;                       // the running sum for one neuron across all agents
+    private int numOutputs;                  // how many outputs the last update produced per agent
+    private NetworkCompiler.BatchEvaluator kernel; // the whole network unrolled for this topology, agent by agent (null to run it layer by layer)
+
+    PopulationNet(int popSize, NeuralNetwork shape) {
+        this.popSize = popSize;
+        numInputs = shape.getNumInputs();
+        numLayers = shape.getNumEvaluatedLayers();
+        numWeights = shape.getNumberOfWeights();
+        layerNeurons = new int[numLayers];
+        layerInputs = new int[numLayers];
+        layerOffsets = new int[numLayers];
+        layerActivations = new Activation[numLayers];
+        for (int i = 0; i < numLayers; i++) {
+            layerNeurons[i] = shape.getLayerNeurons(i);
+            layerInputs[i] = shape.getLayerInputs(i);
+            layerOffsets[i] = shape.getLayerOffset(i);
+            layerActivations[i] = shape.getActivation(i);
+        }
+        response = shape.getResponse();
+        weights = new double[numWeights * popSize];
+        inputs = new double[numInputs * popSize];
+        outputs = new double[shape.getMaxLayerSize() * popSize];
+        scratch = new double[shape.getMaxLayerSize() * popSize];
+        netInput = new double[popSize];
+        if (shape.isCompiled()) {            // compiledInference, the same numbers bit for bit
+            kernel = NetworkCompiler.compileBatch(shape);
+        }
+    }
+
+    void setWeights(int agent, double[] w) {
+        setWeights(agent, w, 0);
+    }
+
+    void setWeights(int agent, double[] block, int offset) { // scatter one genome into its column
+        for (int i = 0; i < numWeights; i++) {
+            weights[i * popSize + agent] = block[offset + i];
+        }
+    }
+
+    void setInputs(int agent, double[] in) {
+        for (int k = 0; k < numInputs; k++) {
+            inputs[k * popSize + agent] = in[k];
+        }
+    }
+
+    boolean inputsMatch(int agent, double[] in) { // are these the inputs the agent's outputs were computed from?
+        for (int k = 0; k < numInputs; k++) {
+            if (inputs[k * popSize + agent] != in[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    double getOutput(int agent, int output) {
+        return outputs[output * popSize + agent];
+    }
+
+    int getNumOutputs() {
+        return numOutputs;
+    }
+
+    // same math in the same order as NeuralNetwork.Update so results are bit for bit identical,
+    // but the innermost loops run over agents so they stream through contiguous memory
+    void update() {
+        update(0, popSize);
+    }
+
+    void update(int from, int to) { // just the agents in [from, to), different ranges can be run on different threads at once
+        if (kernel != null) {
+            numOutputs = kernel.update(weights, inputs, outputs, popSize, from, to);
+            return;
+        }
+        double[] in = inputs;
+        int numIn = numInputs;
+        for (int i = 0; i < numLayers; i++) {
+            double[] out = (numLayers - 1 - i) % 2 == 0 ? outputs : scratch;
+            int w = layerOffsets[i];
+            for (int n = 0; n < layerNeurons[i]; n++) {
+                neuron(weights, w, in, numIn, out, n, popSize, from, to, layerActivations[i]);
+                w += numIn + 1;
+            }
+            in = out;
+            numIn = layerNeurons[i];
+        }
+        numOutputs = numLayers > 0 ? numIn : 0;
+    }
+
+    // one neuron for the agents in [from, to): its weights are rows w to w + numIn of weights (the threshold last), its inputs the first numIn
+    // rows of in, and its output goes in row n of out, every row being stride long; VectorPopulationNet does the same thing with SIMD
+    void neuron(double[] weights, int w, double[] in, int numIn, double[] out, int n, int stride, int from, int to, Activation activation) {
+        Arrays.fill(netInput, from, to, 0);
+        for (int k = 0; k < numIn; k++) {
+            int wBase = w++ * stride;
+            int inBase = k * stride;
+            for (int a = from; a < to; a++) {
+                netInput[a] += weights[wBase + a] * in[inBase + a];
+            }
+        }
+        int wBase = w * stride;
+        int outBase = n * stride;
+        for (int a = from; a < to; a++) {
+            out[outBase + a] = activation.apply(netInput[a] + (weights[wBase + a] + Params.BIAS), response);
+        }
+    }
+
+    // the vector backend when it's asked for and this JVM has the incubator module (--add-modules jdk.incubator.vector), this one otherwise
+    static PopulationNet create(int popSize, NeuralNetwork shape, boolean vectorized) {
+        if (vectorized && vectorBackendWorks(shape)) {
+            return newVectorBackend(popSize, shape);
+        }
+        return new PopulationNet(popSize, shape);
+    }
+
+    private static Boolean vectorWorks;      // checked once per run
+
+    private static synchronized boolean vectorBackendWorks(NeuralNetwork shape) {
+        if (vectorWorks == null) {
+            vectorWorks = false;
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                System.err.println("The vector backend needs the JVM started with --add-modules jdk.incubator.vector, using the scalar one.");
+            } else if (!vectorBackendBuilt()) {
+                System.err.println("The vector backend isn't on the class path (it's built from vector/ on its own), using the scalar one.");
+            } else if (matchesScalar(newVectorBackend(67, shape), new PopulationNet(67, shape))) { // an odd size so the leftover lanes get checked too
+                vectorWorks = true;
+            } else {
+                System.err.println("The vector backend doesn't agree with the scalar one, using the scalar one.");
+            }
+        }
+        return vectorWorks;
+    }
+
+    private static boolean vectorBackendBuilt() {
+        try {
+            Class.forName("neuralnet2.VectorPopulationNet", false, PopulationNet.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static PopulationNet newVectorBackend(int popSize, NeuralNetwork shape) { // by name, so this class loads fine without the module
+        try {
+            return (PopulationNet) Class.forName("neuralnet2.VectorPopulationNet")
+                    .getDeclaredConstructor(int.class, NeuralNetwork.class).newInstance(popSize, shape);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("couldn't load the vector backend", e);
+        }
+    }
+
+    static final double TOLERANCE = 1e-9;    // how far a backend's outputs may be from the scalar ones, fused multiply-adds and vector exp round differently
+
+    static boolean matchesScalar(PopulationNet candidate, PopulationNet reference) { // same random weights and inputs through both
+        SplittableRandom rnd = new SplittableRandom(1);
+        double[] w = new double[reference.numWeights], in = new double[reference.numInputs];
+        for (int a = 0; a < reference.popSize; a++) {
+            for (int i = 0; i < w.length; i++) {
+                w[i] = rnd.nextDouble() * 2 - 1;
+            }
+            for (int k = 0; k < in.length; k++) {
+                in[k] = rnd.nextDouble() * 2 - 1;
+            }
+            reference.setWeights(a, w);
+            candidate.setWeights(a, w);
+            reference.setInputs(a, in);
+            candidate.setInputs(a, in);
+        }
+        reference.update();
+        candidate.update();
+        for (int a = 0; a < reference.popSize; a++) {
+            for (int o = 0; o < reference.numOutputs; o++) {
+                if (!(Math.abs(reference.getOutput(a, o) - candidate.getOutput(a, o)) <= TOLERANCE)) {
+                    return false;
+                }
+            }
+        }
+        return candidate.numOutputs == reference.numOutputs;
+    }
+}
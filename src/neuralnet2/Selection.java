@@ -0,0 +1,179 @@
+package neuralnet2;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+interface Selection {                        // how the genetic algorithm picks parents, set up once per epoch so each pick is cheap
+
+    enum Type {
+        ROULETTE,                            // chance of being picked in proportion to fitness
+        SUS,                                 // stochastic universal sampling, like roulette but with evenly spaced pointers so luck evens out
+        TOURNAMENT,                          // the fittest of a few picked at random
+        RANK;                                // chance in proportion to place in the fitness order rather than the fitness itself
+
+        Selection create(int tournamentSize) {
+            switch (this) {
+                case SUS:
+                    return new StochasticUniversal();
+                case TOURNAMENT:
+                    return new Tournament(tournamentSize);
+                case RANK:
+                    return new Rank();
+                default:
+                    return new Roulette();
+            }
+        }
+    }
+
+    // fitness[i] is genome i's, with the genomes already stable sorted from least to most fit (GeneticAlg.epoch's order),
+    // picks is how many parents the epoch expects to ask for
+    void prepare(double[] fitness, int size, int picks, SplittableRandom rnd);
+
+    int select(RandomGenerator rnd);         // the index of the next parent
+
+    // the index of the epoch's pick-th parent (counting from 0), which doesn't depend on the order the picks are asked for in,
+    // so several threads can breed at once; after prepare, nothing but StochasticUniversal's plain select changes any state
+    default int select(int pick, RandomGenerator rnd) {
+        return select(rnd);
+    }
+
+    // prefix sums of the fitness, searched with a binary search so a pick is O(log n) instead of a walk down the population;
+    // fitness can go negative (bad mines), so if any is the whole lot is shifted up to start at zero, and if nobody has
+    // any fitness at all every genome is as likely as the next
+    class Roulette implements Selection {
+        double[] prefix = new double[0];     // prefix[i] is the (shifted) fitness of genomes 0 to i
+        int size;
+
+        @Override
+        public void prepare(double[] fitness, int size, int picks, SplittableRandom rnd) {
+            this.size = size;
+            if (prefix.length < size) {
+                prefix = new double[size];
+            }
+            double min = 0;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, fitness[i]);
+            }
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += fitness[i] - min;
+                prefix[i] = sum;
+            }
+        }
+
+        @Override
+        public int select(RandomGenerator rnd) {
+            if (total() <= 0) {
+                return rnd.nextInt(size);
+            }
+            return find(rnd.nextDouble() * total());
+        }
+
+        double total() {
+            return size > 0 ? prefix[size - 1] : 0;
+        }
+
+        int find(double stop) { // the first genome whose prefix sum reaches stop, the same one walking down the list would stop at
+            int lo = 0, hi = size - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (prefix[mid] < stop) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    class StochasticUniversal extends Roulette {
+        private int[] picks = new int[0];    // every pick for the epoch, made in one sweep then shuffled so parents pair up at random
+        private int numPicks, next;
+
+        @Override
+        public void prepare(double[] fitness, int size, int picks, SplittableRandom rnd) {
+            super.prepare(fitness, size, picks, rnd);
+            numPicks = Math.max(1, picks);
+            if (this.picks.length < numPicks) {
+                this.picks = new int[numPicks];
+            }
+            double spacing = total() / numPicks;
+            double pointer = rnd.nextDouble() * spacing;
+            int at = 0;
+            for (int p = 0; p < numPicks; p++, pointer += spacing) {
+                if (total() <= 0) {
+                    this.picks[p] = p % size;
+                    continue;
+                }
+                while (at < size - 1 && prefix[at] < pointer) {
+                    at++;
+                }
+                this.picks[p] = at;
+            }
+            for (int p = numPicks - 1; p > 0; p--) {
+                int q = rnd.nextInt(p + 1);
+                int swap = this.picks[p];
+                this.picks[p] = this.picks[q];
+                this.picks[q] = swap;
+            }
+            next = 0;
+        }
+
+        @Override
+        public int select(RandomGenerator rnd) { // more picks than expected fall back to plain roulette
+            return next < numPicks ? picks[next++] : super.select(rnd);
+        }
+
+        @Override
+        public int select(int pick, RandomGenerator rnd) {
+            return pick < numPicks ? picks[pick] : super.select(rnd);
+        }
+    }
+
+    class Tournament implements Selection {
+        private double[] fitness = new double[0];
+        private int size;
+        private int rounds;                  // how many genomes go into each tournament
+
+        Tournament(int rounds) {
+            this.rounds = Math.max(1, rounds);
+        }
+
+        @Override
+        public void prepare(double[] fitness, int size, int picks, SplittableRandom rnd) {
+            if (this.fitness.length < size) {
+                this.fitness = new double[size];
+            }
+            System.arraycopy(fitness, 0, this.fitness, 0, size);
+            this.size = size;
+        }
+
+        @Override
+        public int select(RandomGenerator rnd) {
+            int best = rnd.nextInt(size);
+            for (int r = 1; r < rounds; r++) {
+                int challenger = rnd.nextInt(size);
+                if (fitness[challenger] > fitness[best]) {
+                    best = challenger;
+                }
+            }
+            return best;
+        }
+    }
+
+    class Rank extends Roulette {
+        private double[] ranks = new double[0];
+
+        @Override
+        public void prepare(double[] fitness, int size, int picks, SplittableRandom rnd) {
+            if (ranks.length < size) {
+                ranks = new double[size];
+            }
+            for (int r = 0; r < size; r++) { // the genomes come sorted, so a genome's rank is its place (ties keep population order)
+                ranks[r] = r + 1;            // the least fit gets a weight of 1, the fittest a weight of size
+            }
+            super.prepare(ranks, size, picks, rnd);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package neuralnet2;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+class SimLoopMS implements Runnable {        // runs the simulation on its own thread, handing finished frames to whoever is drawing
+
+    enum Speed {
+        X1(Params.TICKS_PER_SECOND),         // slow enough to watch every tick
+        X10(Params.TICKS_PER_SECOND * 10),
+        UNLIMITED(0);                        // as fast as the CPU allows, most ticks are never drawn
+
+        final int ticksPerSecond;
+
+        Speed(int ticksPerSecond) {
+            this.ticksPerSecond = ticksPerSecond;
+        }
+
+        Speed next() {
+            return values()[(ordinal() + 1) % values().length];
+        }
+    }
+
+    private SimulationMS sim;                // only ever touched on the simulation thread once it's started
+    private AutosaveMS autosave;
+    private volatile Speed speed;
+    private volatile boolean running;
+    private Thread thread;
+    private ConcurrentLinkedQueue<Consumer<SimulationMS>> commands; // things other threads want done to the simulation between ticks
+    private AtomicReference<FrameMS> latest; // the newest finished frame, waiting to be drawn
+    private ArrayBlockingQueue<FrameMS> free; // frames that have been drawn and can be filled in again
+
+    SimLoopMS(SimulationMS sim, AutosaveMS autosave, Speed speed) {
+        this.sim = sim;
+        this.autosave = autosave;
+        this.speed = speed;
+        commands = new ConcurrentLinkedQueue<>();
+        latest = new AtomicReference<>();
+        free = new ArrayBlockingQueue<>(2); // one being drawn while the other is filled in
+        free.add(new FrameMS());
+        free.add(new FrameMS());
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() { // returns once the simulation thread has finished its tick, after that the simulation can be touched from anywhere
+        running = false;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime();
+        while (running) {
+            Consumer<SimulationMS> command;
+            while ((command = commands.poll()) != null) {
+                command.accept(sim);
+            }
+
+            if (sim.tick() && AutosaveMS.isDue(sim.getGenerations())) { // a generation finished
+                autosave.autosave("autosave", CheckpointMS.capture(sim), sim.getGenerations());
+            }
+            publishFrame();
+
+            int ticksPerSecond = speed.ticksPerSecond;
+            if (ticksPerSecond > 0) { // keep to the chosen speed, but don't race to catch up after falling behind
+                nextTick += 1_000_000_000L / ticksPerSecond;
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else {
+                    nextTick = System.nanoTime();
+                }
+            } else {
+                nextTick = System.nanoTime();
+            }
+        }
+    }
+
+    private void publishFrame() { // only copies the world out once the last frame has been picked up, so unseen ticks cost nothing
+        if (latest.get() == null) {
+            FrameMS frame = free.poll();
+            if (frame != null) {
+                frame.capture(sim);
+                latest.set(frame);
+            }
+        }
+    }
+
+    FrameMS takeFrame() { // the newest frame, or null if there hasn't been a tick since the last one was taken; give it back when done
+        return latest.getAndSet(null);
+    }
+
+    void giveBack(FrameMS frame) {
+        free.offer(frame);
+    }
+
+    void submit(Consumer<SimulationMS> command) { // runs on the simulation thread before its next tick
+        commands.add(command);
+    }
+
+    Speed getSpeed() {
+        return speed;
+    }
+
+    void setSpeed(Speed speed) {
+        this.speed = speed;
+    }
+
+    SimulationMS getSim() { // only safe to use once stopped
+        return sim;
+    }
+}
@@ -0,0 +1,306 @@
+package neuralnet2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+class SimulationMS {                         // the minesweeper simulation itself, with no drawing so it can run with or without a window
+
+    enum FitnessStat {                       // how a genome's scores from several worlds are boiled down to one fitness
+        MEAN, MEDIAN, MIN, MAX
+    }
+
+    private int ticks;                       // tick counter for a run of a generation's agents
+    private int generationTicks;             // how long a generation is (config.ticks to start with, HeadlessMS can change it on a plateau)
+    private int generations;                 // the counter for which generation the sim's on
+    private int numAgents;                   // how many agents
+    private GeneticAlg GA;                   // the genetic algorithm that manages the genome weights
+    private GenomeArena pop;                 // the weights of the neural nets for each of the agents, which they read in place
+    private ArrayList<WorldMS> worlds;       // every genome gets an agent in each of these worlds, the first one is the one that's shown
+    private double[] scores;                 // one genome's fitness in each world, for working out the statistic
+    private ArrayList<WorldTask> worldTasks; // ticks each world on the pool, made the first time they're needed
+    private RecursiveAction allWorlds;       // runs them all at once
+    private Config config;                   // how big everything is
+    private FitnessLogMS fitnessLog;         // how each generation did, the newest Params.FITNESS_HISTORY in memory and (optionally) all of them on disk
+    private int[] rungs;                     // the ticks a race is run at (none when racing is off), see race()
+    private int nextRung;
+    private boolean[] retired;               // the genomes that lost a race this generation
+    private int numRetired;
+    private double[] sorted;                 // the running genomes' fitness, for finding a race's cutoff
+    private long agentTicks, agentTicksSkipped; // genome ticks run so far, and how many of those retired genomes sat out
+
+    SimulationMS(Config config, SplittableRandom rnd) { // everything random in the simulation comes from streams split off of rnd
+        this.config = config;
+        numAgents = config.sweepers;
+        generationTicks = config.ticks;
+        ticks = 0;
+        generations = 0;
+        fitnessLog = new FitnessLogMS(Params.FITNESS_HISTORY);
+
+        // make up the worlds, each with its own mines and agents
+        worlds = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, config.worlds); i++) {
+            worlds.add(new WorldMS(config, rnd.split()));
+        }
+        scores = new double[worlds.size()];
+        rungs = config.raceTicks(generationTicks);
+        retired = new boolean[numAgents];
+        sorted = new double[numAgents];
+
+        // give agent neural nets their weights
+        GA = new GeneticAlg(config, getWorld().getAgents().get(0).getNumberOfWeights(), rnd.split());
+        pop = GA.getArena();
+        shareWeights();
+    }
+
+    boolean tick() { // runs one tick of the simulation, returns true if this tick finished a generation
+        if (ticks + 1 < generationTicks) { // do another tick toward finishing a generation
+            ticks++;  // count ticks to set the length of the generation run
+            if (worlds.size() == 1) {
+                getWorld().tick();
+            } else {
+                tickWorlds(1);
+            }
+            ticked(1);
+            return false;
+        }
+        evolve();
+        return true;
+    }
+
+    void evaluateGeneration() { // runs the rest of this generation's ticks, stopping just before the genetic algorithm
+        if (worlds.size() == 1) {
+            while (ticks + 1 < generationTicks) {
+                tick();
+            }
+            return;
+        }
+        while (ticks + 1 < generationTicks) {
+            int stop = nextRung < rungs.length ? rungs[nextRung] : generationTicks - 1;
+            int ticksLeft = stop - ticks;
+            tickWorlds(ticksLeft); // each world runs the rest of the generation (or up to the next race) on its own thread
+            ticks += ticksLeft;
+            ticked(ticksLeft);
+        }
+    }
+
+    private void ticked(int n) { // after n ticks, runs the race if one is due
+        agentTicks += (long) n * numAgents;
+        agentTicksSkipped += (long) n * numRetired;
+        scoreGenomes();
+        if (nextRung < rungs.length && ticks == rungs[nextRung]) {
+            race();
+            nextRung++;
+        }
+    }
+
+    // successive halving: the genomes still running are ranked by the fitness they have so far and all but the best
+    // config.raceKeep of them (ties with the last one kept stay in) are retired, so the rest of the generation's ticks go to
+    // the promising ones; a retired genome's fitness is scaled up to what it would have scored at the same rate over the
+    // whole generation, so it stays comparable with the genomes that ran to the end when the genetic algorithm ranks them
+    private void race() {
+        int running = numAgents - numRetired;
+        for (int i = 0, j = 0; i < numAgents; i++) {
+            if (!retired[i]) {
+                sorted[j++] = pop.getFitness(i);
+            }
+        }
+        Arrays.sort(sorted, 0, running);
+        int keep = Math.max(1, (int) Math.ceil(running * config.raceKeep));
+        double cutoff = sorted[running - keep];
+        double scale = (generationTicks - 1.0) / ticks;
+        for (int i = 0; i < numAgents; i++) {
+            if (!retired[i] && pop.getFitness(i) < cutoff) {
+                retired[i] = true;
+                numRetired++;
+                pop.setFitness(i, pop.getFitness(i) * scale);
+                for (WorldMS world : worlds) {
+                    world.retire(i);
+                }
+            }
+        }
+    }
+
+    void evolve() { // a generation has completed, run the genetic algorithm and update the agents
+        generations++;
+        ticks = 0;
+        long start = StatsMS.start();
+        GA.epoch(); // the big genetic algorithm process line
+        StatsMS.end(StatsMS.Phase.EPOCH, start);
+        fitnessLog.add(generations, GA);
+        StatsMS.generation(generations, GA.avgFitness(), GA.bestFitness());
+        shareWeights(); // the arena swapped its blocks, so the agents need pointing at the new one
+        for (WorldMS world : worlds) {
+            world.reset();
+        }
+        unretire();
+        nextRung = 0;
+    }
+
+    private void unretire() { // everyone runs again
+        Arrays.fill(retired, false);
+        numRetired = 0;
+        for (WorldMS world : worlds) {
+            world.unretire();
+        }
+    }
+
+    private void scoreGenomes() { // keep track of each agent's fitness in the GA as well as the NN
+        for (int i = 0; i < numAgents; i++) {
+            if (retired[i]) { // already scored when it was retired
+                continue;
+            }
+            if (worlds.size() == 1) {
+                pop.setFitness(i, getWorld().getFitness(i));
+                continue;
+            }
+            for (int w = 0; w < worlds.size(); w++) {
+                scores[w] = worlds.get(w).getFitness(i);
+            }
+            pop.setFitness(i, statistic(scores, config.fitnessStat));
+        }
+    }
+
+    private static double statistic(double[] scores, FitnessStat stat) { // scores is scratch, refilled for every genome, so it's sorted in place
+        switch (stat) {
+            case MEDIAN:
+                Arrays.sort(scores);
+                int mid = scores.length / 2;
+                return scores.length % 2 == 1 ? scores[mid] : (scores[mid - 1] + scores[mid]) / 2;
+            case MIN:
+                double min = scores[0];
+                for (double s : scores) {
+                    min = Math.min(min, s);
+                }
+                return min;
+            case MAX:
+                double max = scores[0];
+                for (double s : scores) {
+                    max = Math.max(max, s);
+                }
+                return max;
+            default:
+                double total = 0;
+                for (double s : scores) {
+                    total += s;
+                }
+                return total / scores.length;
+        }
+    }
+
+    private void tickWorlds(int n) { // runs n ticks in every world at once, waiting for them all; the tasks are made once and reused
+        if (worldTasks == null) {
+            worldTasks = new ArrayList<>(worlds.size());
+            for (WorldMS world : worlds) {
+                worldTasks.add(new WorldTask(world));
+            }
+            allWorlds = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(worldTasks);
+                }
+            };
+        }
+        for (WorldTask task : worldTasks) {
+            task.reinitialize();
+            task.ticks = n;
+        }
+        allWorlds.reinitialize();
+        WorldMS.pool().invoke(allWorlds); // an exception in any world comes back out of here
+    }
+
+    @SuppressWarnings("serial")
+    private static class WorldTask extends RecursiveAction {
+        private final WorldMS world;
+        private int ticks;
+
+        WorldTask(WorldMS world) {
+            this.world = world;
+        }
+
+        @Override
+        protected void compute() {
+            for (int t = 0; t < ticks; t++) {
+                world.tick();
+            }
+        }
+    }
+
+    // self-explanatory
+    int getTicks() {
+        return ticks;
+    }
+
+    int getTicksLeft() {
+        return generationTicks - ticks;
+    }
+
+    int getGenerationTicks() {
+        return generationTicks;
+    }
+
+    int getGenerations() {
+        return generations;
+    }
+
+    Config getConfig() {
+        return config;
+    }
+
+    GeneticAlg getGA() {
+        return GA;
+    }
+
+    GenomeArena getPop() {
+        return pop;
+    }
+
+    FitnessLogMS getFitnessLog() {
+        return fitnessLog;
+    }
+
+    WorldMS getWorld() { // the world that gets drawn
+        return worlds.get(0);
+    }
+
+    WorldMS getWorld(int world) {
+        return worlds.get(world);
+    }
+
+    int getNumWorlds() {
+        return worlds.size();
+    }
+
+    long getAgentTicks() {
+        return agentTicks;
+    }
+
+    long getAgentTicksSkipped() {
+        return agentTicksSkipped;
+    }
+
+    void setTicks(int ticks) { // a checkpoint doesn't keep who was retired, so everyone runs again until the next race
+        this.ticks = ticks;
+        unretire();
+        nextRung = 0;
+        while (nextRung < rungs.length && rungs[nextRung] <= ticks) {
+            nextRung++;
+        }
+    }
+
+    void setGenerationTicks(int generationTicks) { // between generations, it takes effect from the next one
+        this.generationTicks = generationTicks;
+        rungs = config.raceTicks(generationTicks);
+    }
+
+    void setGenerations(int generations) {
+        this.generations = generations;
+    }
+
+    void shareWeights() { // call after the population's weights have been changed or replaced
+        for (WorldMS world : worlds) {
+            world.setWeights(pop);
+        }
+    }
+}
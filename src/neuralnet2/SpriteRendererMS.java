@@ -0,0 +1,134 @@
+package neuralnet2;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+class SpriteRendererMS {                     // draws frames by stamping pictures drawn ahead of time, so a frame allocates nothing however many sweepers there are
+
+    private static final int FITNESS_COLORS = 20; // every fitness past +/-20 gets the brightest color anyway
+    private static final int LABELS = 1000;  // fitness labels from -LABELS to LABELS are drawn once and kept
+
+    private Graphics2D g;                    // the one graphics used for every frame, drawing into the target image
+    private Image asteroid;
+    private BufferedImage[] bodies;          // a sweeper's body for each fitness color, indexed by fitness + FITNESS_COLORS
+    private BufferedImage[] pointers;        // the line showing which way a sweeper faces, for Params.SPRITE_ROTATIONS angles
+    private int pointerCenter;               // where the sweeper's center is in a pointer sprite
+    private BufferedImage[] labels;          // fitness numbers, drawn the first time they're needed
+    private FontMetrics fm;                  // for the labels' size
+    private BufferedImage mineLayer;         // the background with all the mines on it, redrawn only when one moves
+    private Graphics2D mineG;
+    private int mineVersion;                 // the FrameMS.getMineVersion the layer was drawn for
+    private Color goodColor, badColor, pointerColor;
+    private double scaleX, scaleY;           // from the world to the picture, the sprites themselves stay the same size
+
+    SpriteRendererMS(BufferedImage target, Image asteroid, int worldWidth, int worldHeight) {
+        this.asteroid = asteroid;
+        scaleX = (double) target.getWidth() / worldWidth;
+        scaleY = (double) target.getHeight() / worldHeight;
+        g = target.createGraphics();
+        mineLayer = new BufferedImage(target.getWidth(), target.getHeight(), BufferedImage.TYPE_INT_RGB);
+        mineG = mineLayer.createGraphics();
+        mineVersion = -1;
+        goodColor = new Color(0, 123, 167);
+        badColor = Color.RED;
+        pointerColor = new Color(255, 200, 0);
+        labels = new BufferedImage[2 * LABELS + 1];
+        fm = g.getFontMetrics();
+
+        int scale = Params.SCALE;
+        bodies = new BufferedImage[2 * FITNESS_COLORS + 1];
+        for (int f = -FITNESS_COLORS; f <= FITNESS_COLORS; f++) { // the same fancy color scheme the sweepers always had
+            BufferedImage body = new BufferedImage(scale + 1, scale + 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D bg = body.createGraphics();
+            bg.setColor(pointerColor);
+            bg.drawOval(0, 0, scale, scale);
+            if (f > 0) {
+                bg.setColor(new Color(0, Math.min(255, 15 + f * 12), Math.min(255, 15 + f * 12)));
+            } else {
+                bg.setColor(new Color(Math.min(255, 15 + -f * 12), 0, 0));
+            }
+            bg.fillOval(1, 1, scale - 2, scale - 2);
+            bg.dispose();
+            bodies[f + FITNESS_COLORS] = body;
+        }
+
+        pointerCenter = (int) Math.ceil(1.5 * scale) + 1;
+        pointers = new BufferedImage[Params.SPRITE_ROTATIONS];
+        for (int r = 0; r < pointers.length; r++) {
+            double rotation = 2 * Math.PI * r / pointers.length;
+            BufferedImage pointer = new BufferedImage(2 * pointerCenter + 1, 2 * pointerCenter + 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D pg = pointer.createGraphics();
+            pg.setColor(pointerColor);
+            pg.drawLine(pointerCenter, pointerCenter,
+                    pointerCenter + (int) Math.round(-scale / 2.0 - Math.sin(rotation) * scale),
+                    pointerCenter + (int) Math.round(-scale / 2.0 + Math.cos(rotation) * scale));
+            pg.dispose();
+            pointers[r] = pointer;
+        }
+    }
+
+    void draw(FrameMS frame) {
+        if (frame.getMineVersion() != mineVersion) { // cover everything with a blank screen and put the mines on it
+            drawMines(frame);
+        }
+        g.drawImage(mineLayer, 0, 0, null);
+
+        double[] agents = frame.getAgents();
+        int half = Params.SCALE / 2;
+        for (int i = 0; i < frame.getNumAgents(); i++) {
+            int at = i * AgentMS.DRAW_SIZE;
+            int x = (int) (agents[at] * scaleX), y = (int) (agents[at + 1] * scaleY);
+            int fitness = (int) agents[at + 3];
+            int rotation = Math.floorMod((int) Math.round(agents[at + 2] / (2 * Math.PI) * pointers.length), pointers.length);
+
+            g.drawImage(bodies[Math.max(-FITNESS_COLORS, Math.min(FITNESS_COLORS, fitness)) + FITNESS_COLORS], (int) (agents[at] * scaleX - Params.SCALE / 2.0), (int) (agents[at + 1] * scaleY - Params.SCALE / 2.0), null);
+            g.drawImage(pointers[rotation], x - pointerCenter, y - pointerCenter, null);
+
+            // NEURAL NETWORK VISUALIZATION
+            if (frame.isInputsVisualized()) {
+                g.setColor(goodColor);
+                g.drawLine(x, y, (int) (agents[at + 4] * scaleX), (int) (agents[at + 5] * scaleY));
+                g.setColor(badColor);
+                g.drawLine(x, y, (int) (agents[at + 6] * scaleX), (int) (agents[at + 7] * scaleY));
+            }
+
+            // the agent's fitness
+            drawLabel(fitness, x - half, y + 2 * Params.SCALE);
+        }
+    }
+
+    private void drawMines(FrameMS frame) {
+        mineG.setColor(Color.BLACK);
+        mineG.fillRect(0, 0, mineLayer.getWidth(), mineLayer.getHeight());
+        double[] good = frame.getGoodMines();
+        mineG.setColor(goodColor);
+        for (int i = 0; i < frame.getNumGoodMines(); i++) {
+            mineG.fillOval((int) (good[2 * i] * scaleX - Params.MINE_SIZE / 2), (int) (good[2 * i + 1] * scaleY - Params.MINE_SIZE / 2), (int) Params.MINE_SIZE, (int) Params.MINE_SIZE);
+        }
+        double[] bad = frame.getBadMines();
+        for (int i = 0; i < frame.getNumBadMines(); i++) {
+            mineG.drawImage(asteroid, (int) (bad[2 * i] * scaleX) - 9, (int) (bad[2 * i + 1] * scaleY) - 9, null);
+        }
+        mineVersion = frame.getMineVersion();
+    }
+
+    private void drawLabel(int fitness, int x, int baseline) {
+        if (fitness < -LABELS || fitness > LABELS) { // way off the usual scale, not worth keeping
+            g.setColor(goodColor);
+            g.drawString(Integer.toString(fitness), x, baseline);
+            return;
+        }
+        BufferedImage label = labels[fitness + LABELS];
+        if (label == null) {
+            String text = Integer.toString(fitness);
+            label = new BufferedImage(Math.max(1, fm.stringWidth(text)), fm.getAscent() + fm.getDescent(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D lg = label.createGraphics();
+            lg.setFont(g.getFont());
+            lg.setColor(goodColor);
+            lg.drawString(text, 0, fm.getAscent());
+            lg.dispose();
+            labels[fitness + LABELS] = label;
+        }
+        g.drawImage(label, x, baseline - fm.getAscent(), null);
+    }
+}
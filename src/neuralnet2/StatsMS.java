@@ -0,0 +1,177 @@
+package neuralnet2;
+
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+class StatsMS {                              // where the time goes: a count, total and latency histogram for each phase, plus JFR events
+
+    enum Phase {
+        SENSE,                               // finding the closest mines and filling in the inputs
+        THINK,                               // running the neural nets
+        ACT,                                 // turning and moving
+        COLLIDE,                             // checking for swept mines and moving them
+        TICK,                                // a whole world tick, all of the above
+        EPOCH,                               // the genetic algorithm making the next generation
+        RENDER,                              // drawing a frame
+        SAVE,                                // writing a checkpoint
+        LOAD                                 // reading one
+    }
+
+    // off unless the JVM is started with -Dneuralnet2.stats=true, being static final the JIT drops every call below when it's off
+    static final boolean ENABLED = Boolean.getBoolean("neuralnet2.stats");
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final int BUCKETS = 40;   // bucket b counts times from 2^b up to 2^(b+1) nanoseconds
+    private static final LongAdder[] counts = new LongAdder[PHASES.length];
+    private static final LongAdder[] totals = new LongAdder[PHASES.length];
+    private static final AtomicLongArray histogram = new AtomicLongArray(PHASES.length * BUCKETS);
+    private static final long[] lastGenerationTotals = new long[PHASES.length]; // for the per generation JFR event
+    private static final long startNanos = System.nanoTime();
+
+    static {
+        for (int p = 0; p < PHASES.length; p++) {
+            counts[p] = new LongAdder();
+            totals[p] = new LongAdder();
+        }
+    }
+
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static long end(Phase phase, long start) { // returns the time now, so one phase's end can be the next one's start
+        if (!ENABLED) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    static void record(Phase phase, long nanos) {
+        if (!ENABLED) {
+            return;
+        }
+        int p = phase.ordinal();
+        counts[p].increment();
+        totals[p].add(nanos);
+        histogram.incrementAndGet(p * BUCKETS + Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, nanos))));
+        if (p >= Phase.EPOCH.ordinal()) { // the tick phases happen thousands of times a generation, they're summed up in GenerationEvent instead
+            PhaseEvent event = new PhaseEvent();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.time = nanos;
+                event.commit();
+            }
+        }
+    }
+
+    static void generation(int generation, double avgFitness, double bestFitness) { // called as each generation finishes
+        if (!ENABLED) {
+            return;
+        }
+        GenerationEvent event = new GenerationEvent();
+        synchronized (lastGenerationTotals) {
+            event.generation = generation;
+            event.avgFitness = avgFitness;
+            event.bestFitness = bestFitness;
+            event.ticks = counts[Phase.TICK.ordinal()].sum();
+            event.senseTime = sinceLastGeneration(Phase.SENSE);
+            event.thinkTime = sinceLastGeneration(Phase.THINK);
+            event.actTime = sinceLastGeneration(Phase.ACT);
+            event.collideTime = sinceLastGeneration(Phase.COLLIDE);
+            event.epochTime = sinceLastGeneration(Phase.EPOCH);
+        }
+        event.commit();
+    }
+
+    private static long sinceLastGeneration(Phase phase) {
+        long total = totals[phase.ordinal()].sum();
+        long delta = total - lastGenerationTotals[phase.ordinal()];
+        lastGenerationTotals[phase.ordinal()] = total;
+        return delta;
+    }
+
+    static String report() { // a table of every phase that has happened so far
+        if (!ENABLED) {
+            return "Instrumentation is off, run with -Dneuralnet2.stats=true to turn it on.";
+        }
+        DecimalFormat df = new DecimalFormat("#0.0");
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-8s %10s %10s %10s %10s %10s%n", "phase", "count", "total ms", "mean us", "p50 us <", "p99 us <"));
+        for (Phase phase : PHASES) {
+            int p = phase.ordinal();
+            long count = counts[p].sum();
+            if (count == 0) {
+                continue;
+            }
+            long total = totals[p].sum();
+            sb.append(String.format("%-8s %10d %10s %10s %10s %10s%n", phase, count, df.format(total / 1e6), df.format(total / 1e3 / count),
+                    df.format(percentile(p, count, 0.5) / 1e3), df.format(percentile(p, count, 0.99) / 1e3)));
+        }
+        sb.append((long) (counts[Phase.TICK.ordinal()].sum() / seconds)).append(" ticks/s over ").append(df.format(seconds)).append(" s");
+        return sb.toString();
+    }
+
+    private static long percentile(int p, long count, double fraction) { // the top of the bucket the percentile falls in
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram.get(p * BUCKETS + b);
+            if (seen >= fraction * count) {
+                return 1L << (b + 1);
+            }
+        }
+        return 1L << BUCKETS;
+    }
+
+    @Name("neuralnet2.Phase")
+    @Label("Phase")
+    @Category("Minesweepers")
+    @Description("One epoch, frame, save or load")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+    }
+
+    @Name("neuralnet2.Generation")
+    @Label("Generation")
+    @Category("Minesweepers")
+    @Description("A finished generation, with the time spent in each phase since the last one")
+    static class GenerationEvent extends Event {
+        @Label("Generation")
+        int generation;
+        @Label("Average Fitness")
+        double avgFitness;
+        @Label("Best Fitness")
+        double bestFitness;
+        @Label("Ticks So Far")
+        long ticks;
+        @Label("Sense Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long senseTime;
+        @Label("Think Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long thinkTime;
+        @Label("Act Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long actTime;
+        @Label("Collide Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long collideTime;
+        @Label("Epoch Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long epochTime;
+    }
+}
@@ -0,0 +1,37 @@
+package neuralnet2;
+
+import java.util.Arrays;
+
+class SweepersMS {                           // every sweeper's state in a world, one primitive array per field indexed by agent, so a tick updates it all in place
+
+    int size;
+    double[] x, y;                           // where each sweeper is
+    double[] rotation;                       // the angle facing is calculated from
+    double[] facingX, facingY;               // which way it's facing, as a unit vector
+    double[] speed;
+    double[] lTrack, rTrack;                 // the brain's last outputs
+    double[] fitness;
+    int[] goodMine, badMine;                 // the closest mines it last sensed (-1 before it's sensed any)
+    double[] goodX, goodY, badX, badY;       // and where they were at the time
+
+    SweepersMS(int size) {
+        this.size = size;
+        x = new double[size];
+        y = new double[size];
+        rotation = new double[size];
+        facingX = new double[size];
+        facingY = new double[size];
+        speed = new double[size];
+        lTrack = new double[size];
+        rTrack = new double[size];
+        fitness = new double[size];
+        goodMine = new int[size];
+        badMine = new int[size];
+        goodX = new double[size];
+        goodY = new double[size];
+        badX = new double[size];
+        badY = new double[size];
+        Arrays.fill(goodMine, -1);
+        Arrays.fill(badMine, -1);
+    }
+}
@@ -0,0 +1,355 @@
+package neuralnet2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+class WorldMS {                              // one arena: the sweepers, the mines, and what happens to them each tick
+
+    private int numAgents;                   // how many agents
+    private int width, height;               // the size of the world the agents live in
+    private ArrayList<AgentMS> agents;       // the agents themselves (the sweepers), views of their slots in sweepers
+    private SweepersMS sweepers;             // every sweeper's position, heading, speed and fitness, in primitive arrays
+    private MineGrid goodGrid, badGrid;      // the mines, their coordinates and an index of where they are for finding the closest one quickly
+    private PopulationNet batch;             // every agent's brain evaluated in one go (null when agents think one at a time)
+    private int[] goodReached, badReached;   // for the parallel tick, the mine each agent reached this tick (-1 for none)
+    private int[] goodTaken, badTaken;       // and the stamp of the last tick each mine was swept in, so it only goes to one agent
+    private int stamp;
+    private boolean parallelTick;            // see Params.PARALLEL_TICK
+    private boolean[] retired;               // agents that lost a race (see SimulationMS.race), they sit out the rest of the generation
+    private int numMoved;                    // how many mines have been swept this tick
+    private int[] movedMine = new int[16];   // which they were (grown as needed, then reused tick after tick)
+    private boolean[] movedGood = new boolean[16]; // which kind each was
+    private double[] movedX = new double[16], movedY = new double[16]; // and where it went
+    private int mineVersion;                 // goes up whenever a mine moves, so a picture of the mines knows when it's out of date
+    private SplittableRandom rnd;            // the world's own random numbers, for where the mines go
+    private final LongAdder senseNanos = new LongAdder(), thinkNanos = new LongAdder(), actNanos = new LongAdder(), collideNanos = new LongAdder(); // parallelTick's ranges' times
+    private static ForkJoinPool pool;        // shared by every world that runs its ticks in parallel (and by simulations running several worlds)
+
+    WorldMS(Config config, SplittableRandom rnd) {
+        this.rnd = rnd;
+        width = config.worldWidth;
+        height = config.worldHeight;
+        numAgents = config.sweepers;
+        parallelTick = config.parallelTick;
+        int numGoodMines = config.goodMines, numBadMines = config.badMines;
+
+        // make up agents
+        retired = new boolean[numAgents];
+        sweepers = new SweepersMS(numAgents);
+        agents = new ArrayList<>(numAgents);
+        for (int i = 0; i < numAgents; i++) {
+            agents.add(new AgentMS(config, rnd.split(), sweepers, i)); // every agent gets a stream of its own
+        }
+        if (config.batchedInference) {
+            batch = PopulationNet.create(numAgents, config.newNetwork(null), config.vectorInference);
+        }
+
+        // set up the goodMines, then the badMines
+        double[] goodX = new double[numGoodMines], goodY = new double[numGoodMines];
+        for (int i = 0; i < numGoodMines; i++) {
+            goodX[i] = rnd.nextDouble() * width;
+            goodY[i] = rnd.nextDouble() * height;
+        }
+        double[] badX = new double[numBadMines], badY = new double[numBadMines];
+        for (int i = 0; i < numBadMines; i++) {
+            badX[i] = rnd.nextDouble() * width;
+            badY[i] = rnd.nextDouble() * height;
+        }
+        goodGrid = new MineGrid(goodX, goodY, width, height);
+        badGrid = new MineGrid(badX, badY, width, height);
+    }
+
+    void tick() {
+        long start = StatsMS.start();
+        numMoved = 0;
+        if (parallelTick) {
+            parallelTick();
+        } else {
+            sequentialTick();
+        }
+        StatsMS.end(StatsMS.Phase.TICK, start);
+    }
+
+    void setWeights(GenomeArena pop) { // point the agents at the new weights (the batch keeps its own transposed copy)
+        for (int i = 0; i < numAgents; i++) {
+            agents.get(i).setWeights(pop.weights(), pop.offset(i));
+            if (batch != null) {
+                batch.setWeights(i, pop.weights(), pop.offset(i));
+            }
+        }
+    }
+
+    void reset() { // a new generation starts from scratch (the mines stay where they are)
+        for (AgentMS agent : agents) {
+            agent.reset();
+        }
+        unretire();
+    }
+
+    void retire(int agent) { // stops it sensing, thinking, moving and sweeping until the next generation, its fitness stays as it is
+        retired[agent] = true;
+    }
+
+    void unretire() { // every agent takes part again, e.g. after a checkpoint is loaded mid-generation
+        Arrays.fill(retired, false);
+    }
+
+    private void sequentialTick() { // each agent senses, thinks, moves and sweeps before the next one goes
+        long sense = 0, think = 0, act = 0, collide = 0; // time spent in each phase this tick
+        if (batch != null) { // sense for everyone, then think for everyone at once
+            long start = StatsMS.start();
+            for (int i = 0; i < numAgents; i++) {
+                if (!retired[i]) {
+                    batch.setInputs(i, agents.get(i).sense(goodGrid, badGrid));
+                }
+            }
+            long sensed = StatsMS.start();
+            batch.update(); // the retired agents' columns too, skipping them would cost the loops their straight runs
+            sense = sensed - start;
+            think = StatsMS.start() - sensed;
+            if (batch.getNumOutputs() < Params.OUTPUTS) {
+                System.err.println("!! incorrect number of outputs !!");
+                return;
+            }
+        }
+        // update each agent by calling their update function and checking to see if they got a mine
+        for (int i = 0; i < numAgents; i++) {
+            if (retired[i]) {
+                continue;
+            }
+            long start = StatsMS.start();
+            if (batch != null) {
+                // a mine swept by an earlier agent this tick can change what this one sees, if so it thinks on its own
+                if (sensesMovedMine(agents.get(i)) && !batch.inputsMatch(i, agents.get(i).sense(goodGrid, badGrid))) {
+                    if (!agents.get(i).think()) {
+                        break;
+                    }
+                } else {
+                    agents.get(i).steer(batch.getOutput(i, 0), batch.getOutput(i, 1));
+                }
+            } else { // thinking one at a time
+                agents.get(i).sense(goodGrid, badGrid);
+                long sensed = StatsMS.start();
+                sense += sensed - start;
+                if (!agents.get(i).decide()) {
+                    System.err.println("!! wrong amount of neural net inputs !!");
+                    break;
+                }
+                start = StatsMS.start();
+                think += start - sensed;
+                agents.get(i).act();
+            }
+            long moved = StatsMS.start();
+            act += moved - start;
+            // did it find a mine
+            int closestMine = agents.get(i).getClosestMine(goodGrid);
+            int foundMine = agents.get(i).checkForMine(goodGrid, closestMine);
+            // if it found a mine, add to that agent's fitness and make a new mine
+            if (foundMine >= 0) {
+                agents.get(i).incrementFitness();
+                respawn(goodGrid, foundMine);
+            }
+
+            closestMine = agents.get(i).getClosestMine(badGrid);
+            foundMine = agents.get(i).checkForMine(badGrid, closestMine);
+            if (foundMine >= 0) {
+                agents.get(i).deIncrimentFitness();
+                respawn(badGrid, foundMine);
+            }
+            collide += StatsMS.start() - moved;
+        }
+        if (StatsMS.ENABLED) {
+            StatsMS.record(StatsMS.Phase.SENSE, sense);
+            StatsMS.record(StatsMS.Phase.THINK, think);
+            StatsMS.record(StatsMS.Phase.ACT, act);
+            StatsMS.record(StatsMS.Phase.COLLIDE, collide);
+        }
+    }
+
+    // every agent senses the world as it was at the start of the tick and moves at the same time, spread over the pool's threads,
+    // then the mines they reached are handed out in agent order so the result is the same however the work got split up
+    private void parallelTick() {
+        if (goodReached == null || goodReached.length != numAgents) {
+            goodReached = new int[numAgents];
+            badReached = new int[numAgents];
+        }
+        if (goodTaken == null || goodTaken.length != goodGrid.size() || badTaken.length != badGrid.size()) {
+            goodTaken = new int[goodGrid.size()];
+            badTaken = new int[badGrid.size()];
+        }
+        pool().invoke(new MoveTask(0, numAgents));
+        if (StatsMS.ENABLED) { // once a tick like sequentialTick, the time every thread spent in each phase added up
+            StatsMS.record(StatsMS.Phase.SENSE, senseNanos.sumThenReset());
+            StatsMS.record(StatsMS.Phase.THINK, thinkNanos.sumThenReset());
+            StatsMS.record(StatsMS.Phase.ACT, actNanos.sumThenReset());
+            StatsMS.record(StatsMS.Phase.COLLIDE, collideNanos.sumThenReset());
+        }
+        if (batch != null && batch.getNumOutputs() < Params.OUTPUTS) {
+            System.err.println("!! incorrect number of outputs !!");
+            return;
+        }
+
+        stamp++;
+        for (int i = 0; i < numAgents; i++) {
+            int foundMine = goodReached[i];
+            if (foundMine >= 0 && goodTaken[foundMine] != stamp) { // first come (in agent order) first served
+                goodTaken[foundMine] = stamp;
+                agents.get(i).incrementFitness();
+                respawn(goodGrid, foundMine);
+            }
+            foundMine = badReached[i];
+            if (foundMine >= 0 && badTaken[foundMine] != stamp) {
+                badTaken[foundMine] = stamp;
+                agents.get(i).deIncrimentFitness();
+                respawn(badGrid, foundMine);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class MoveTask extends RecursiveAction { // senses, thinks and moves a range of agents, splitting it up if it's big
+        private int from, to;
+
+        MoveTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > Math.max(16, numAgents / (Params.THREADS * 4))) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MoveTask(from, mid), new MoveTask(mid, to));
+                return;
+            }
+            long sense = 0, think = 0, act = 0, collide = 0; // this range's share of the tick's time in each phase
+            if (batch != null) {
+                long start = StatsMS.start();
+                for (int i = from; i < to; i++) {
+                    if (!retired[i]) {
+                        batch.setInputs(i, agents.get(i).sense(goodGrid, badGrid));
+                    }
+                }
+                long sensed = StatsMS.start();
+                batch.update(from, to);
+                sense = sensed - start;
+                think = StatsMS.start() - sensed;
+            }
+            for (int i = from; i < to; i++) {
+                AgentMS agent = agents.get(i);
+                if (retired[i]) {
+                    goodReached[i] = -1;
+                    badReached[i] = -1;
+                    continue;
+                }
+                long start = StatsMS.start();
+                if (batch != null) {
+                    agent.steer(batch.getOutput(i, 0), batch.getOutput(i, 1));
+                } else {
+                    agent.sense(goodGrid, badGrid);
+                    long sensed = StatsMS.start();
+                    sense += sensed - start;
+                    agent.decide();
+                    start = StatsMS.start();
+                    think += start - sensed;
+                    agent.act();
+                }
+                long moved = StatsMS.start();
+                act += moved - start;
+                goodReached[i] = agent.checkForMine(goodGrid, agent.getClosestMine(goodGrid));
+                badReached[i] = agent.checkForMine(badGrid, agent.getClosestMine(badGrid));
+                collide += StatsMS.start() - moved;
+            }
+            if (StatsMS.ENABLED) {
+                senseNanos.add(sense);
+                thinkNanos.add(think);
+                actNanos.add(act);
+                collideNanos.add(collide);
+            }
+        }
+    }
+
+    private void respawn(MineGrid grid, int mine) { // a swept up mine turns up again somewhere random
+        double x = rnd.nextDouble() * width;
+        double y = rnd.nextDouble() * height;
+        if (numMoved == movedMine.length) {
+            movedMine = Arrays.copyOf(movedMine, numMoved * 2);
+            movedGood = Arrays.copyOf(movedGood, numMoved * 2);
+            movedX = Arrays.copyOf(movedX, numMoved * 2);
+            movedY = Arrays.copyOf(movedY, numMoved * 2);
+        }
+        movedMine[numMoved] = mine;
+        movedGood[numMoved] = grid == goodGrid;
+        movedX[numMoved] = x;
+        movedY[numMoved] = y;
+        numMoved++;
+        grid.set(mine, x, y);
+        mineVersion++;
+    }
+
+    // could the mines swept so far this tick have changed which mines the agent senses? only if one of them was its closest,
+    // or one turned up at least as close, which with thousands of agents saves nearly all of them sensing again
+    private boolean sensesMovedMine(AgentMS agent) {
+        for (int m = 0; m < numMoved; m++) {
+            if (agent.isAffectedBy(movedMine[m], movedX[m], movedY[m], movedGood[m])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Params.THREADS);
+        }
+        return pool;
+    }
+
+    // self-explanatory
+    int getNumAgents() {
+        return numAgents;
+    }
+
+    double getFitness(int agent) {
+        return sweepers.fitness[agent];
+    }
+
+    ArrayList<AgentMS> getAgents() {
+        return agents;
+    }
+
+    MineGrid getGoodMines() {
+        return goodGrid;
+    }
+
+    MineGrid getBadMines() {
+        return badGrid;
+    }
+
+    int getMineVersion() {
+        return mineVersion;
+    }
+
+    void setGoodMines(double[] xy) { // x/y pairs
+        goodGrid = grid(xy);
+        mineVersion++;
+    }
+
+    void setBadMines(double[] xy) {
+        badGrid = grid(xy);
+        mineVersion++;
+    }
+
+    private MineGrid grid(double[] xy) {
+        double[] x = new double[xy.length / 2], y = new double[xy.length / 2];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = xy[2 * i];
+            y[i] = xy[2 * i + 1];
+        }
+        return new MineGrid(x, y, width, height);
+    }
+}
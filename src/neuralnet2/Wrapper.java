@@ -2,22 +2,40 @@ package neuralnet2;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 @SuppressWarnings("serial")
 public class Wrapper extends JFrame {
 
-    private Wrapper() {
+    private Wrapper(Config config) {
         setSize(Params.WIN_WIDTH + Params.WIN_HRZSPACE, Params.WIN_HEIGHT + Params.WIN_BTNSPACE);
-        add(new ControllerMS(Params.WIN_WIDTH, Params.WIN_HEIGHT));
+        ControllerMS controller = new ControllerMS(config, Params.WIN_WIDTH, Params.WIN_HEIGHT);
+        add(controller);
         setResizable(false);
         setTitle("Minesweepers");
         setLocationRelativeTo(null);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) { // runs before the exit
+                controller.saveOnExit();
+            }
+        });
     }
 
     public static void main(String[] args) {
+        Config config;
+        try {
+            config = Config.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Wrapper " + Config.USAGE);
+            System.exit(1);
+            return;
+        }
         EventQueue.invokeLater(() -> {
-            Wrapper go = new Wrapper();
+            Wrapper go = new Wrapper(config);
             go.setVisible(true);
         });
     }
@@ -0,0 +1,65 @@
+package neuralnet2;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// PopulationNet with each neuron worked out for a whole vector of agents at a time, using the JDK's incubating Vector API;
+// only ever loaded by name from PopulationNet.create, so nothing breaks on a JVM started without --add-modules jdk.incubator.vector;
+// it's its own source set (see build.gradle) so the rest of the tree compiles without the module
+class VectorPopulationNet extends PopulationNet {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED; // as wide as the CPU goes
+    private static final DoubleVector ONE = DoubleVector.broadcast(SPECIES, 1);
+
+    VectorPopulationNet(int popSize, NeuralNetwork shape) {
+        super(popSize, shape);
+    }
+
+    @Override
+    void neuron(double[] weights, int w, double[] in, int numIn, double[] out, int n, int stride, int from, int to, Activation activation) {
+        int end = from + SPECIES.loopBound(to - from);
+        // a row at a time like the scalar loop, so every input streams through memory in order, with the sums kept in netInput
+        double[] sum = netInput;
+        Arrays.fill(sum, from, to, 0);
+        for (int k = 0; k < numIn; k++) {
+            int wBase = (w + k) * stride;
+            int inBase = k * stride;
+            int a = from;
+            for (; a < end; a += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, weights, wBase + a).fma(DoubleVector.fromArray(SPECIES, in, inBase + a), DoubleVector.fromArray(SPECIES, sum, a)).intoArray(sum, a);
+            }
+            for (; a < to; a++) { // the agents left over after the last full vector
+                sum[a] = Math.fma(weights[wBase + a], in[inBase + a], sum[a]);
+            }
+        }
+        int wBase = (w + numIn) * stride;
+        int outBase = n * stride;
+        int a = from;
+        if (activation == Activation.SIGMOID_LUT) {
+            end = from; // a table lookup per lane is no quicker as a gather, the whole lot goes through the scalar loop below
+        }
+        for (; a < end; a += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, sum, a).add(DoubleVector.fromArray(SPECIES, weights, wBase + a).add(Params.BIAS));
+            activate(x, activation).intoArray(out, outBase + a);
+        }
+        for (; a < to; a++) {
+            out[outBase + a] = activation.apply(sum[a] + (weights[wBase + a] + Params.BIAS), response);
+        }
+    }
+
+    private DoubleVector activate(DoubleVector x, Activation activation) { // Activation.apply a whole vector at a time
+        switch (activation) {
+            case TANH:
+                return x.div(response).lanewise(VectorOperators.TANH);
+            case RELU:
+                return x.max(0);
+            case LEAKY_RELU:
+                return x.max(x.mul(Activation.LEAKY_SLOPE));
+            default:
+                return ONE.div(ONE.add(x.div(-response).lanewise(VectorOperators.EXP)));
+        }
+    }
+}